@@ -0,0 +1,121 @@
+package com.onlyu.auto;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the multipart message with the report attachments and renders it. A run only ever does this once
+ * per session, cold, reading the reports and base64-encoding them; the warm variant shows what the
+ * attachment cache of a session saves when the same reports go into another message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MimeAssemblyBenchmark
+{
+    /**
+     * A session of its own for every invocation, so nothing is cached yet.
+     */
+    @State(Scope.Thread)
+    public static class ColdSession
+    {
+        private ReportSession _reportSession;
+
+        @Setup(Level.Invocation)
+        public void setUp(MimeAssemblyBenchmark benchmark)
+        {
+            _reportSession = ReportSession.of(benchmark._workspace, new Semaphore(1), RunMetrics.of(benchmark._profile));
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException
+        {
+            _reportSession.close();
+        }
+    }
+
+    /**
+     * One session for the whole trial whose attachments have already been read and encoded.
+     */
+    @State(Scope.Benchmark)
+    public static class WarmSession
+    {
+        private ReportSession _reportSession;
+
+        @Setup(Level.Trial)
+        public void setUp(MimeAssemblyBenchmark benchmark) throws IOException, MessagingException, InterruptedException
+        {
+            _reportSession = ReportSession.of(benchmark._workspace, new Semaphore(1), RunMetrics.of(benchmark._profile));
+            benchmark.assemble(_reportSession);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException
+        {
+            _reportSession.close();
+        }
+    }
+
+    @Param({ ReportFixtures._REALISTIC, ReportFixtures._OVERSIZED })
+    public String shape;
+
+    @Param({ "2", "12" })
+    public int attachments;
+
+    private Path _workspace;
+    private Session _session;
+    private Profile _profile;
+    private List<File> _reports;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        _workspace = ReportFixtures.createWorkspace();
+        _reports = new ArrayList<>();
+        YearMonth month = ReportFixtures.pastMonth();
+        for (int i = 0; i < attachments; i++)
+            _reports.add(ReportFixtures.createReport(_workspace, month.minusMonths(i), shape));
+        _session = Session.getInstance(new Properties());
+        _profile = Profile.of(_workspace, "sender@example.com", "password", "recipient@example.com", "cc@example.com", "Benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        ReportFixtures.deleteWorkspace(_workspace);
+    }
+
+    @Benchmark
+    public MimeMessage assembleCold(ColdSession session) throws IOException, MessagingException, InterruptedException
+    {
+        return assemble(session._reportSession);
+    }
+
+    @Benchmark
+    public MimeMessage assembleWarm(WarmSession session) throws IOException, MessagingException, InterruptedException
+    {
+        return assemble(session._reportSession);
+    }
+
+    private MimeMessage assemble(ReportSession reportSession) throws IOException, MessagingException, InterruptedException
+    {
+        MimeMessage message = MailSender.compose(_session, "benchmark", _profile, "Benchmark Week 1", Year.now(), reportSession, _reports, false, RunMetrics.of(_profile));
+        message.saveChanges();
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+}
@@ -0,0 +1,69 @@
+package com.onlyu.auto;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MonthSheetBenchmark
+{
+    private Path _workspace;
+    private XSSFWorkbook _workbook;
+    private Sheet _sheet;
+    private YearMonth _month;
+    private MonthSheet _monthSheet;
+    private LocalDate _today;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        _workspace = ReportFixtures.createWorkspace();
+        YearMonth month = ReportFixtures.pastMonth();
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(ReportFixtures.createReport(_workspace, month, ReportFixtures._REALISTIC))))
+        {
+            _workbook = new XSSFWorkbook(inputStream);
+        }
+        _sheet = _workbook.getSheetAt(0);
+        _month = month;
+        _monthSheet = MonthSheetLoader.load(_sheet, month);
+        _today = LocalDate.now();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        _workbook.close();
+        ReportFixtures.deleteWorkspace(_workspace);
+    }
+
+    /**
+     * The same load the ReportHandler constructor goes through for a month.
+     */
+    @Benchmark
+    public MonthSheet loadMonth()
+    {
+        return MonthSheetLoader.load(_sheet, _month);
+    }
+
+    /**
+     * Scheduling on the plain model alone, no workbook involved.
+     */
+    @Benchmark
+    public void selectUnsentWeeks(Blackhole blackhole) throws IOException
+    {
+        blackhole.consume(_monthSheet.needsContentUpdate(_today, RandomContentProvider.of()));
+        blackhole.consume(_monthSheet.getUnsentWeeks(_today));
+    }
+}
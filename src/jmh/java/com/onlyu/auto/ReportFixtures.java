@@ -0,0 +1,129 @@
+package com.onlyu.auto;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Generates report workbooks for the benchmarks. A "realistic" report is what a normal run leaves behind
+ * for a fully past month, an "oversized" one additionally carries thousands of filler rows, strings and styles.
+ */
+public final class ReportFixtures
+{
+    public static final String _REALISTIC = "realistic";
+    public static final String _OVERSIZED = "oversized";
+    public static final int _OVERSIZED_FIRST_FILLER_ROW = 20;
+    public static final int _OVERSIZED_FILLER_ROWS = 5000;
+    public static final int _OVERSIZED_FILLER_COLUMNS = 8;
+    public static final int _OVERSIZED_STYLES = 500;
+
+    private ReportFixtures()
+    {
+    }
+
+    /**
+     * A month whose weeks are all in the past, so that updateContent(LocalDate) and markAllAsSent(LocalDate) have work to do.
+     */
+    public static YearMonth pastMonth()
+    {
+        return YearMonth.now().minusMonths(2);
+    }
+
+    public static Path createWorkspace() throws IOException
+    {
+        return Files.createTempDirectory("timesheet-bench-");
+    }
+
+    public static void deleteWorkspace(Path workspace) throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(workspace))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.deleteIfExists(path);
+        }
+    }
+
+    public static File createReport(Path workspace, YearMonth month, String shape) throws IOException, InvalidFormatException
+    {
+        File report = AutoUpdater.reportFileOf(workspace, month);
+        try (ReportHandler handler = new ReportHandler(report, workspace))
+        {
+            handler
+                .updatePeriodTitle()
+                .updateStartOfMonth()
+                .updateEndOfMonth()
+                .updateWeekPeriods()
+                .updateContent(LocalDate.now())
+                .save();
+        }
+        if (_OVERSIZED.equals(shape))
+            inflate(report);
+        return report;
+    }
+
+    /**
+     * Same report, but without any content yet, as if it had just been created from the template.
+     */
+    public static File createEmptyReport(Path workspace, YearMonth month) throws IOException, InvalidFormatException
+    {
+        File report = AutoUpdater.reportFileOf(workspace, month);
+        try (ReportHandler handler = new ReportHandler(report, workspace))
+        {
+            handler
+                .updatePeriodTitle()
+                .updateStartOfMonth()
+                .updateEndOfMonth()
+                .updateWeekPeriods()
+                .save();
+        }
+        return report;
+    }
+
+    static void inflate(File report) throws IOException
+    {
+        XSSFWorkbook workbook;
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(report)))
+        {
+            workbook = new XSSFWorkbook(inputStream);
+        }
+        try (workbook)
+        {
+            List<CellStyle> styles = new ArrayList<>();
+            for (int i = 0; i < _OVERSIZED_STYLES; i++)
+            {
+                CellStyle style = workbook.createCellStyle();
+                style.setIndention((short)(i % 15));
+                style.setRotation((short)(i % 90));
+                styles.add(style);
+            }
+            Sheet sheet = workbook.getSheetAt(0);
+            for (int r = 0; r < _OVERSIZED_FILLER_ROWS; r++)
+            {
+                Row row = sheet.createRow(_OVERSIZED_FIRST_FILLER_ROW + r);
+                for (int c = 0; c < _OVERSIZED_FILLER_COLUMNS; c++)
+                {
+                    Cell cell = row.createCell(c);
+                    cell.setCellValue(String.format("Filler row %d column %d, long enough to look like a task description", r, c));
+                    cell.setCellStyle(styles.get((r * _OVERSIZED_FILLER_COLUMNS + c) % styles.size()));
+                }
+            }
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(report)))
+            {
+                workbook.write(outputStream);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.onlyu.auto;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReportHandlerBenchmark
+{
+    /**
+     * Copies of the report that are put back before every invocation, so every write has the same cells to
+     * change. One can be patched, the other carries a stale sheet name, which forces a write of the whole
+     * workbook like the first save of a month does.
+     */
+    @State(Scope.Thread)
+    public static class WriteTargets
+    {
+        private byte[] _patchable;
+        private byte[] _unpatchable;
+        private File _patchedReport;
+        private File _fullReport;
+
+        @Setup(Level.Trial)
+        public void setUp(ReportHandlerBenchmark benchmark) throws IOException
+        {
+            _patchable = Files.readAllBytes(benchmark._report.toPath());
+            try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(_patchable)))
+            {
+                workbook.setSheetName(0, "Template");
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                workbook.write(buffer);
+                _unpatchable = buffer.toByteArray();
+            }
+            _patchedReport = Files.createDirectories(benchmark._workspace.resolve("patched")).resolve(benchmark._report.getName()).toFile();
+            _fullReport = Files.createDirectories(benchmark._workspace.resolve("full")).resolve(benchmark._report.getName()).toFile();
+        }
+
+        @Setup(Level.Invocation)
+        public void restore() throws IOException
+        {
+            Files.write(_patchedReport.toPath(), _patchable);
+            Files.write(_fullReport.toPath(), _unpatchable);
+        }
+    }
+
+    @Param({ ReportFixtures._REALISTIC, ReportFixtures._OVERSIZED })
+    public String shape;
+
+    private Path _workspace;
+    private YearMonth _month;
+    private LocalDate _today;
+    private File _report;
+    private File _emptyReport;
+    private File _missingReport;
+    private List<Integer> _weekIndexes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InvalidFormatException
+    {
+        _workspace = ReportFixtures.createWorkspace();
+        _month = ReportFixtures.pastMonth();
+        _today = LocalDate.now();
+        Path filled = Files.createDirectory(_workspace.resolve("filled"));
+        Path empty = Files.createDirectory(_workspace.resolve("empty"));
+        Path missing = Files.createDirectory(_workspace.resolve("missing"));
+        _report = ReportFixtures.createReport(filled, _month, shape);
+        _emptyReport = ReportFixtures.createEmptyReport(empty, _month);
+        _missingReport = AutoUpdater.reportFileOf(missing, _month);
+        _weekIndexes = new ArrayList<>();
+        for (MonthLayout.Week week : MonthLayout.of(_month).getWeeks())
+            _weekIndexes.add(week.getIndex());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        ReportFixtures.deleteWorkspace(_workspace);
+    }
+
+    @Benchmark
+    public void openFromTemplate(Blackhole blackhole) throws IOException, InvalidFormatException
+    {
+        try (ReportHandler handler = new ReportHandler(_missingReport, _missingReport.getParentFile().toPath()))
+        {
+            blackhole.consume(handler.getMonthSheet());
+        }
+    }
+
+    @Benchmark
+    public void openExisting(Blackhole blackhole) throws IOException, InvalidFormatException
+    {
+        try (ReportHandler handler = new ReportHandler(_report, _workspace))
+        {
+            blackhole.consume(handler.getMonthSheet());
+        }
+    }
+
+    @Benchmark
+    public ReportSnapshot scanExisting() throws IOException
+    {
+        return ReportScanner.scan(_report);
+    }
+
+    @Benchmark
+    public void updateContent(Blackhole blackhole) throws IOException, InvalidFormatException
+    {
+        try (ReportHandler handler = new ReportHandler(_emptyReport, _workspace))
+        {
+            blackhole.consume(handler.updateContent(_today).isDirty());
+        }
+    }
+
+    @Benchmark
+    public void markAllAsSent(Blackhole blackhole) throws IOException, InvalidFormatException
+    {
+        try (ReportHandler handler = new ReportHandler(_report, _workspace))
+        {
+            blackhole.consume(handler.markAllAsSent(_today).isDirty());
+        }
+    }
+
+    @Benchmark
+    public void write(Blackhole blackhole) throws IOException, InvalidFormatException
+    {
+        // Writes back to the same file, nothing changes, so this is the path of a run with nothing to save
+        try (ReportHandler handler = new ReportHandler(_report, _workspace))
+        {
+            blackhole.consume(handler.write());
+        }
+    }
+
+    @Benchmark
+    public void writePatched(WriteTargets targets, Blackhole blackhole) throws IOException, InvalidFormatException
+    {
+        try (ReportHandler handler = new ReportHandler(targets._patchedReport, _workspace))
+        {
+            blackhole.consume(handler.markAsSent(_weekIndexes).write());
+        }
+    }
+
+    @Benchmark
+    public void writeFull(WriteTargets targets, Blackhole blackhole) throws IOException, InvalidFormatException
+    {
+        try (ReportHandler handler = new ReportHandler(targets._fullReport, _workspace))
+        {
+            blackhole.consume(handler.markAsSent(_weekIndexes).write());
+        }
+    }
+}
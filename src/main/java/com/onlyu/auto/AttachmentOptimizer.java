@@ -0,0 +1,289 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Shrinks the copy of a report that goes out by email, the report on disk is never touched. Every part of the
+ * package is recompressed at the highest level, and a slim copy additionally drops the shared strings and cell
+ * formats no cell refers to anymore, which pile up as POI never removes the strings it replaced.
+ */
+public class AttachmentOptimizer
+{
+    private static final Logger _LOGGER = LogManager.getLogger(AttachmentOptimizer.class);
+
+    public static final String _SPREADSHEET_NAMESPACE = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    public static final String _SHARED_STRINGS_ENTRY = "xl/sharedStrings.xml";
+    public static final String _STYLES_ENTRY = "xl/styles.xml";
+    public static final Pattern _WORKSHEET_ENTRY_PATTERN = Pattern.compile("xl/worksheets/[^/]+\\.xml");
+
+    private AttachmentOptimizer()
+    {
+    }
+
+    /**
+     * Optimized copy of the xlsx package, or the content unchanged when it cannot be optimized.
+     */
+    public static byte[] optimize(ByteBuffer content, boolean slim)
+    {
+        try
+        {
+            Map<String, byte[]> entries = read(content.duplicate());
+            if (slim)
+                compact(entries);
+            return write(entries);
+        }
+        catch (IOException | ParserConfigurationException | SAXException | TransformerException | RuntimeException e)
+        {
+            // Attaching the report as it is beats not sending it at all
+            _LOGGER.warn("Unable to optimize attachment, sending it as is: {}", e.getMessage());
+            byte[] bytes = new byte[content.remaining()];
+            content.duplicate().get(bytes);
+            return bytes;
+        }
+    }
+
+    private static Map<String, byte[]> read(ByteBuffer content) throws IOException
+    {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new InputStream()
+        {
+            @Override
+            public int read()
+            {
+                return content.hasRemaining() ? content.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length)
+            {
+                if (!content.hasRemaining())
+                    return -1;
+                int count = Math.min(length, content.remaining());
+                content.get(bytes, offset, count);
+                return count;
+            }
+        }))
+        {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null)
+            {
+                if (!entry.isDirectory())
+                    entries.put(entry.getName(), zipInputStream.readAllBytes());
+            }
+        }
+        if (entries.isEmpty())
+            throw new IOException("Not a zip package");
+        return entries;
+    }
+
+    private static byte[] write(Map<String, byte[]> entries) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(buffer))
+        {
+            zipOutputStream.setLevel(Deflater.BEST_COMPRESSION);
+            for (Map.Entry<String, byte[]> entry : entries.entrySet())
+            {
+                zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
+                zipOutputStream.write(entry.getValue());
+                zipOutputStream.closeEntry();
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Keeps only the shared strings and cell formats the worksheets refer to and renumbers the references.
+     */
+    private static void compact(Map<String, byte[]> entries) throws IOException, ParserConfigurationException, SAXException, TransformerException
+    {
+        DocumentBuilder builder = newDocumentBuilder();
+        Map<String, Document> sheets = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : entries.entrySet())
+        {
+            if (_WORKSHEET_ENTRY_PATTERN.matcher(entry.getKey()).matches())
+                sheets.put(entry.getKey(), builder.parse(new ByteArrayInputStream(entry.getValue())));
+        }
+        if (sheets.isEmpty())
+            return;
+
+        // Which strings and formats are in use, and how often strings are referenced
+        TreeSet<Integer> usedStrings = new TreeSet<>();
+        TreeSet<Integer> usedStyles = new TreeSet<>();
+        usedStyles.add(0); // The default format has to stay first
+        int stringReferences = 0;
+        for (Document sheet : sheets.values())
+        {
+            for (Element cell : elements(sheet, "c"))
+            {
+                if ("s".equals(cell.getAttribute("t")))
+                {
+                    Element value = first(cell, "v");
+                    if (value != null)
+                    {
+                        usedStrings.add(Integer.parseInt(value.getTextContent().strip()));
+                        ++stringReferences;
+                    }
+                }
+                addIndex(usedStyles, cell.getAttribute("s"));
+            }
+            for (Element row : elements(sheet, "row"))
+                addIndex(usedStyles, row.getAttribute("s"));
+            for (Element column : elements(sheet, "col"))
+                addIndex(usedStyles, column.getAttribute("style"));
+        }
+
+        Map<Integer, Integer> stringMapping = null;
+        if (entries.containsKey(_SHARED_STRINGS_ENTRY))
+        {
+            Document sharedStrings = builder.parse(new ByteArrayInputStream(entries.get(_SHARED_STRINGS_ENTRY)));
+            stringMapping = retain(sharedStrings.getDocumentElement(), "si", usedStrings);
+            sharedStrings.getDocumentElement().setAttribute("count", Integer.toString(stringReferences));
+            sharedStrings.getDocumentElement().setAttribute("uniqueCount", Integer.toString(stringMapping.size()));
+            entries.put(_SHARED_STRINGS_ENTRY, serialize(sharedStrings));
+        }
+        Map<Integer, Integer> styleMapping = null;
+        if (entries.containsKey(_STYLES_ENTRY))
+        {
+            Document styles = builder.parse(new ByteArrayInputStream(entries.get(_STYLES_ENTRY)));
+            Element cellXfs = first(styles.getDocumentElement(), "cellXfs");
+            if (cellXfs != null)
+            {
+                styleMapping = retain(cellXfs, "xf", usedStyles);
+                cellXfs.setAttribute("count", Integer.toString(styleMapping.size()));
+                entries.put(_STYLES_ENTRY, serialize(styles));
+            }
+        }
+
+        for (Map.Entry<String, Document> entry : sheets.entrySet())
+        {
+            Document sheet = entry.getValue();
+            for (Element cell : elements(sheet, "c"))
+            {
+                if (stringMapping != null && "s".equals(cell.getAttribute("t")))
+                {
+                    Element value = first(cell, "v");
+                    if (value != null)
+                        value.setTextContent(Integer.toString(stringMapping.get(Integer.parseInt(value.getTextContent().strip()))));
+                }
+                remap(cell, "s", styleMapping);
+            }
+            for (Element row : elements(sheet, "row"))
+                remap(row, "s", styleMapping);
+            for (Element column : elements(sheet, "col"))
+                remap(column, "style", styleMapping);
+            entries.put(entry.getKey(), serialize(sheet));
+        }
+    }
+
+    /**
+     * Removes the children with the given name whose position is not in use, returns old to new positions.
+     */
+    private static Map<Integer, Integer> retain(Element parent, String childName, TreeSet<Integer> used)
+    {
+        Map<Integer, Integer> mapping = new TreeMap<>();
+        int index = 0;
+        for (Element child : children(parent, childName))
+        {
+            if (used.contains(index))
+                mapping.put(index, mapping.size());
+            else
+                parent.removeChild(child);
+            ++index;
+        }
+        if (!used.isEmpty() && used.last() >= index)
+            throw new IllegalStateException(String.format("Reference to %s %d, but there are only %d", childName, used.last(), index));
+        return mapping;
+    }
+
+    private static void addIndex(TreeSet<Integer> indexes, String attribute)
+    {
+        if (!attribute.isEmpty())
+            indexes.add(Integer.parseInt(attribute));
+    }
+
+    private static void remap(Element element, String attribute, Map<Integer, Integer> mapping)
+    {
+        if (mapping == null || !element.hasAttribute(attribute))
+            return;
+        element.setAttribute(attribute, Integer.toString(mapping.get(Integer.parseInt(element.getAttribute(attribute)))));
+    }
+
+    private static List<Element> elements(Document document, String name)
+    {
+        NodeList nodes = document.getElementsByTagNameNS(_SPREADSHEET_NAMESPACE, name);
+        List<Element> elements = new ArrayList<>(nodes.getLength());
+        for (int i = 0; i < nodes.getLength(); i++)
+            elements.add((Element)nodes.item(i));
+        return elements;
+    }
+
+    private static List<Element> children(Element parent, String name)
+    {
+        List<Element> children = new ArrayList<>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling())
+        {
+            if (node instanceof Element element && _SPREADSHEET_NAMESPACE.equals(element.getNamespaceURI()) && name.equals(element.getLocalName()))
+                children.add(element);
+        }
+        return children;
+    }
+
+    private static Element first(Element parent, String name)
+    {
+        List<Element> children = children(parent, name);
+        return children.isEmpty() ? null : children.getFirst();
+    }
+
+    private static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException
+    {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        return factory.newDocumentBuilder();
+    }
+
+    private static byte[] serialize(Document document) throws TransformerException
+    {
+        document.setXmlStandalone(true);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(document), new StreamResult(buffer));
+        return buffer.toByteArray();
+    }
+}
@@ -1,265 +1,339 @@
-package com.onlyu.auto;
-
-import jakarta.mail.*;
-import jakarta.mail.internet.InternetAddress;
-import jakarta.mail.internet.MimeBodyPart;
-import jakarta.mail.internet.MimeMessage;
-import jakarta.mail.internet.MimeMultipart;
-import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.eclipse.angus.mail.util.MailConnectException;
-
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.nio.file.Path;
-import java.time.LocalDate;
-import java.time.Month;
-import java.time.Year;
-import java.time.format.TextStyle;
-import java.util.*;
-
-public class AutoUpdater
-{
-    public static final String _HOST = "smtp.gmail.com";
-    public static final String _PORT = "465";
-    public static final int _RETRY_ATTEMPTS_THRESHOLD = 120;
-    public static final String _SUBJECT = "[%s] Andy - Timesheet - %s - %s";
-    public static final String _CONTENT =
-    """
-        Dear everyone,
-
-        Attached in this email is the up-to-date working timesheet for %s - %s.
-
-        Thank you for your support. If you need anything, please let me know.\s
-
-        Best regards,
-
-        Anh Nguyen (Andy)
-    """;
-
-    public static void main(String[] args) throws FileNotFoundException, IOException, InvalidFormatException, MessagingException, InterruptedException
-    {
-        System.out.printf("Started the timesheet updater process...\n");
-
-        String baseDirPathArg = args[0];
-        Path baseDirPath = Path.of(baseDirPathArg);
-
-        String senderArg = args[1];
-        String passwordArg = args[2];
-        String recipientsArg = args[3];
-        String ccRecipientsArg = args[4];
-        String projectNameArg = args[5];
-        boolean noEmailMode = (args.length > 6 && "--no-email-mode".equals(args[6])) || (args.length > 7 && "--no-email-mode".equals(args[7]));
-        boolean dryRunMode = (args.length > 6 && "--dry-run".equals(args[6])) || (args.length > 7 && "--dry-run".equals(args[7]));
-        noEmailMode = dryRunMode ? true : noEmailMode;
-
-        System.out.printf("Base directory path provided: [%s]\n", baseDirPathArg);
-        File baseDir = new File(baseDirPathArg);
-        if (!baseDir.exists())
-            throw new FileNotFoundException("Base directory does not exist: " + baseDir.getAbsolutePath());
-        System.out.printf("Verified that base directory [%s] exists\n", baseDirPathArg);
-
-        // Preload some values
-        LocalDate now = LocalDate.now();
-        LocalDate lastDayOfThePreviousMonth = now.withDayOfMonth(1).minusDays(1);
-        Month currentMonth = now.getMonth();
-        Month previousMonth = lastDayOfThePreviousMonth.getMonth();
-        Year currentYear = Year.of(now.getYear());
-        Year previousYear = Year.of(lastDayOfThePreviousMonth.getYear()); // This maybe not the actual previous year
-
-        // Previous month
-        File previousMonthReport = new File(Path.of
-        (
-            baseDirPathArg,
-            String.format
-            (
-                ReportHandler._REPORT_FILE_NAME_FORMAT,
-                previousMonth.getValue(),
-                previousMonth.getDisplayName(TextStyle.FULL, Locale.getDefault()),
-                previousYear.getValue()
-            )
-        ).toString());
-        // Current month
-        File currentMonthReport = new File(Path.of
-        (
-            baseDirPathArg,
-            String.format
-            (
-                ReportHandler._REPORT_FILE_NAME_FORMAT,
-                currentMonth.getValue(),
-                currentMonth.getDisplayName(TextStyle.FULL, Locale.getDefault()),
-                currentYear.getValue()
-            )
-        ).toString());
-        // Verify
-        System.out.printf("Previous month report: %s\n", previousMonthReport.getAbsolutePath());
-        System.out.printf("Current month report:  %s\n", currentMonthReport.getAbsolutePath());
-        List<File> reports = Arrays.asList(previousMonthReport, currentMonthReport);
-        List<File> toBeSentReports = new ArrayList<>();
-
-        // Real processing
-        StringBuilder finalUnsentContentsTitle = new StringBuilder();
-        for (File report : reports)
-        {
-            // It's not existed yet, then create it
-            if (!report.exists())
-            {
-                System.out.printf("Current month report %s not found. Creating a new report from scratch now...\n", currentMonthReport.getName());
-                try (ReportHandler handler = ReportHandler.of(report, baseDirPath))
-                {
-                    report = handler
-                        .updatePeriodTitle()
-                        .updateStartOfMonth()
-                        .updateEndOfMonth()
-                        .updateWeekPeriods()
-                        .updateContent()
-                        .save();
-                    System.out.printf("Created report %s is assigned to month: %d\n", report.getName(), handler.getMonth().getValue());
-                    System.out.printf("Created report %s is assigned to year:  %d\n", report.getName(), handler.getYear().getValue());
-                    System.out.printf("Created report %s start date:           %s\n", report.getName(), handler.getStartOfMonth().format(ReportHandler._DATE_TIME_FORMATTER));
-                    System.out.printf("Created report %s end date:             %s\n", report.getName(), handler.getEndOfMonth().format(ReportHandler._DATE_TIME_FORMATTER));
-                }
-            }
-
-            // Time to do some processing...
-            // 1. Load the report or reports
-            // 2. If there are any single past content that has not been sent, then sent it
-            // 3. If there are not, then just let it be, next week task will handle that
-
-            // Load the report
-            try (ReportHandler handler = ReportHandler.of(report, baseDirPath))
-            {
-                handler
-                    .updateContent()
-                    .save();
-                StringBuilder sb = new StringBuilder();
-                for (WeekEntry entry : handler.getWeekEntries())
-                {
-                    if (entry.isPast() && entry.hasContent() && !entry.hasBeenSent())
-                        sb.append(entry.getPresentableIndex() + ", ");
-                }
-                if (sb.isEmpty())
-                    continue;
-                sb = sb
-                    .delete(sb.length() - 2, sb.length())
-                    .insert(0, String.format("%s Week ", handler.getMonthFullname()));
-                System.out.printf("%s in %s have unsent content!\n", sb, report.getName());
-                finalUnsentContentsTitle.append(sb).append(" & ");
-                toBeSentReports.add(report);
-            }
-        }
-
-        if (finalUnsentContentsTitle.isEmpty() && !dryRunMode)
-        {
-            System.out.printf("No need to send anything at the moment.\n");
-            return;
-        }
-
-        finalUnsentContentsTitle = !finalUnsentContentsTitle.isEmpty()
-            ? finalUnsentContentsTitle.delete(finalUnsentContentsTitle.length() - 3, finalUnsentContentsTitle.length())
-            : finalUnsentContentsTitle;
-        System.out.printf("Sending reports for %s now...\n", finalUnsentContentsTitle);
-
-        if (args[1] == null || args[1].isBlank())
-            throw new RuntimeException("No SMTP Outlook password was provided!");
-
-        // Mail props
-        Properties properties = new Properties();
-        properties.put("mail.smtp.host", _HOST);
-        properties.put("mail.smtp.port", _PORT);
-        properties.put("mail.smtp.auth", "true");
-        properties.put("mail.smtp.socketFactory.port", "465");
-        properties.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
-        // Core objects
-        Session session = Session.getDefaultInstance(properties, new Authenticator()
-        {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication()
-            {
-                return new PasswordAuthentication(senderArg, passwordArg);
-            }
-        });
-        MimeMessage message = new MimeMessage(session);
-        // Prepare message
-        message.setFrom(new InternetAddress(senderArg));
-        message.addRecipient(Message.RecipientType.TO, new InternetAddress(recipientsArg));
-        message.addRecipients(Message.RecipientType.CC, InternetAddress.parse(ccRecipientsArg));
-        message.setSubject(String.format(_SUBJECT, projectNameArg, finalUnsentContentsTitle, currentYear.getValue()));
-        // Body
-        BodyPart messageBodyPart = new MimeBodyPart();
-        messageBodyPart.setText(String.format(_CONTENT, finalUnsentContentsTitle, currentYear.getValue()));
-        // Attachments
-        List<MimeBodyPart> attachmentParts = new ArrayList<>();
-        for (File report : toBeSentReports)
-        {
-            MimeBodyPart attachmentPart = new MimeBodyPart();
-            attachmentPart.attachFile(report);
-            attachmentParts.add(attachmentPart);
-        }
-        // Assemble
-        Multipart multipart = new MimeMultipart();
-        multipart.addBodyPart(messageBodyPart);
-        for (MimeBodyPart bodyPart : attachmentParts)
-            multipart.addBodyPart(bodyPart);
-        // Integrate
-        message.setContent(multipart);
-        // Check for internet connection
-        System.out.printf("Checking mail server connectivity...\n");
-        try (Transport transport = message.getSession().getTransport())
-        {
-            int attempt = 0;
-            while (attempt <= _RETRY_ATTEMPTS_THRESHOLD)
-            {
-                try
-                {
-                    transport.connect(senderArg, passwordArg);
-                    if (transport.isConnected())
-                    {
-                        System.out.printf("Acquired connection to mail server. Confirmed that internet connectivity is active!\n");
-                        break;
-                    }
-                }
-                catch (MailConnectException e)
-                {
-                    System.err.printf("Might be internet connection issue, error: %s!\n", e.getMessage());
-                }
-                ++attempt;
-                System.out.printf("Attempting to connect to mail server %s:%s. Number of efforts so far: %d\n", _HOST, _PORT, attempt);
-                Thread.sleep(1000); // Go back and try again
-            }
-            if (attempt > _RETRY_ATTEMPTS_THRESHOLD)
-            {
-                System.out.printf("No internet connection, probably, nothing is going out at the moment...\n");
-                return;
-            }
-        }
-        catch (Exception e)
-        {
-            System.err.printf("Exception occurred while checking for mail server connectivity\n");
-            e.printStackTrace();
-        }
-        // Are we allow to send it?
-        if (noEmailMode)
-        {
-            System.out.printf("Email sending feature is disabled! Nothing is going out!\n");
-            return;
-        }
-        // Send it!
-        System.out.printf("Sending email now...\n");
-        Transport.send(message);
-        System.out.printf("Email sent!\n");
-        // Mark all week entries as sent!
-        System.out.printf("Marking week entries as sent...\n");
-        for (File report : toBeSentReports)
-        {
-            try (ReportHandler handler = ReportHandler.of(report, baseDirPath))
-            {
-                handler
-                    .markAllAsSent()
-                    .save();
-            }
-        }
-        System.out.printf("Marked week entries as sent!\n");
-    }
-
-}
+package com.onlyu.auto;
+
+import jakarta.mail.MessagingException;
+import org.apache.logging.log4j.CloseableThreadContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+public class AutoUpdater
+{
+    private static final Logger _LOGGER = LogManager.getLogger(AutoUpdater.class);
+
+    public static final String _BATCH_MODE_FLAG = "--batch";
+    public static final String _SIMULATION_MODE_FLAG = "--simulate";
+    public static final String _LOAD_MODE_FLAG = "--load";
+    public static final String _STAND_IN_MODE_FLAG = "--smtp-stand-in";
+    public static final String _SUBJECT = "[%s] Andy - Timesheet - %s - %s";
+    public static final String _CONTENT =
+    """
+        Dear everyone,
+
+        Attached in this email is the up-to-date working timesheet for %s - %s.
+
+        Thank you for your support. If you need anything, please let me know.\s
+
+        Best regards,
+
+        Anh Nguyen (Andy)
+    """;
+
+    public static void main(String[] args) throws FileNotFoundException, IOException, InvalidFormatException, MessagingException, InterruptedException
+    {
+        if (args.length > 1 && _BATCH_MODE_FLAG.equals(args[0]))
+        {
+            _LOGGER.info("Started the timesheet updater process in batch mode...");
+            RunOptions options = RunOptions.parse(args, 2);
+            if (options.isDaemonMode())
+            {
+                Daemon.of(BatchRunner.readManifest(Path.of(args[1])), options).run();
+                return;
+            }
+            int failures = BatchRunner.of(Path.of(args[1]), options).run();
+            if (failures > 0)
+                System.exit(1);
+            return;
+        }
+
+        if (args.length > 3 && _SIMULATION_MODE_FLAG.equals(args[0]))
+        {
+            _LOGGER.info("Started the timesheet updater process in simulation mode...");
+            Simulation.of(Path.of(args[1]), LocalDate.parse(args[2]), LocalDate.parse(args[3]), RunOptions.parse(args, 4)).run();
+            return;
+        }
+
+        if (args.length > 2 && _LOAD_MODE_FLAG.equals(args[0]))
+        {
+            _LOGGER.info("Started the timesheet updater process in load test mode...");
+            int failures = LoadHarness.of(Path.of(args[1]), Integer.parseInt(args[2]), RunOptions.parse(args, 3)).run();
+            if (failures > 0)
+                System.exit(1);
+            return;
+        }
+
+        if (args.length > 1 && _STAND_IN_MODE_FLAG.equals(args[0]))
+        {
+            // Runs until the process gets killed, batch or daemon processes are pointed at it with --smtp=
+            RunOptions options = RunOptions.parse(args, 2);
+            try (LocalSmtpServer server = LocalSmtpServer.start(Integer.parseInt(args[1]), options.getStandInLatency(), options.getStandInFailureRate()))
+            {
+                Thread.sleep(Long.MAX_VALUE);
+            }
+            return;
+        }
+
+        _LOGGER.info("Started the timesheet updater process...");
+        Profile profile = Profile.of(Path.of(args[0]), args[1], args[2], args[3], args[4], args[5]);
+        RunOptions options = RunOptions.parse(args, 6);
+        if (options.isDaemonMode())
+        {
+            Daemon.of(List.of(profile), options).run();
+            return;
+        }
+        try (TransportPool transportPool = TransportPool.of())
+        {
+            run(profile, options, new Semaphore(1), transportPool);
+        }
+    }
+
+    public static void run(Profile profile, RunOptions options, Semaphore parsePermits, TransportPool transportPool) throws FileNotFoundException, IOException, InvalidFormatException, MessagingException, InterruptedException
+    {
+        run(profile, options, parsePermits, transportPool, StateLedger.of(profile.getBaseDir()));
+    }
+
+    public static void run(Profile profile, RunOptions options, Semaphore parsePermits, TransportPool transportPool, StateLedger ledger) throws FileNotFoundException, IOException, InvalidFormatException, MessagingException, InterruptedException
+    {
+        run(profile, options, parsePermits, transportPool, ledger, RunContext.of(options.getClock(), ContentProvider.of(options.getContentSource(), profile), RunMetrics.of(profile)));
+    }
+
+    /**
+     * Runs the profile with every log line of the run, whichever thread it comes from, tagged with the profile.
+     */
+    public static void run(Profile profile, RunOptions options, Semaphore parsePermits, TransportPool transportPool, StateLedger ledger, RunContext context) throws FileNotFoundException, IOException, InvalidFormatException, MessagingException, InterruptedException
+    {
+        try (CloseableThreadContext.Instance logContext = LogContext.profile(profile))
+        {
+            runInContext(profile, options, parsePermits, transportPool, ledger, context);
+        }
+    }
+
+    private static void runInContext(Profile profile, RunOptions options, Semaphore parsePermits, TransportPool transportPool, StateLedger ledger, RunContext context) throws FileNotFoundException, IOException, InvalidFormatException, MessagingException, InterruptedException
+    {
+        Path baseDirPath = profile.getBaseDir();
+        String baseDirPathArg = baseDirPath.toString();
+
+        _LOGGER.info("Base directory path provided: [{}]", baseDirPathArg);
+        File baseDir = new File(baseDirPathArg);
+        if (!baseDir.exists())
+            throw new FileNotFoundException("Base directory does not exist: " + baseDir.getAbsolutePath());
+        _LOGGER.info("Verified that base directory [{}] exists", baseDirPathArg);
+
+        // Preload some values, the date is taken once for the whole run
+        LocalDate now = context.getToday();
+        LocalDate lastDayOfThePreviousMonth = now.withDayOfMonth(1).minusDays(1);
+
+        List<File> reports = new ArrayList<>();
+        if (options.isBackfillMode())
+        {
+            for (YearMonth month = options.getBackfillFrom(); !month.isAfter(options.getBackfillTo()); month = month.plusMonths(1))
+                reports.add(reportFileOf(baseDirPath, month));
+            _LOGGER.info("Backfilling {} report(s) from {} to {}", Unbox.box(reports.size()), options.getBackfillFrom(), options.getBackfillTo());
+        }
+        else
+        {
+            // Previous month
+            File previousMonthReport = reportFileOf(baseDirPath, YearMonth.from(lastDayOfThePreviousMonth));
+            // Current month
+            File currentMonthReport = reportFileOf(baseDirPath, YearMonth.from(now));
+            // Verify
+            _LOGGER.info("Previous month report: {}", previousMonthReport.getAbsolutePath());
+            _LOGGER.info("Current month report:  {}", currentMonthReport.getAbsolutePath());
+            reports.add(previousMonthReport);
+            reports.add(currentMonthReport);
+        }
+
+        RunMetrics metrics = context.getMetrics();
+        boolean success = false;
+        try
+        {
+            // Reports are scanned first and only loaded once, if at all, for the whole run, then written back at the end
+            try (ReportSession reportSession = ReportSession.of(baseDirPath, parsePermits, ledger, metrics))
+            {
+                // Another run on the same base directory waits here until this one is done with the reports
+                reportSession.lockAll(reports);
+                List<ReportSnapshot> snapshots = update(reportSession, reports, context);
+                if (options.isBackfillMode() && !options.isCombineMode())
+                {
+                    for (ReportSnapshot snapshot : snapshots)
+                        process(profile, options, reportSession, transportPool, List.of(snapshot), snapshot.getYear(), context);
+                }
+                else
+                    process(profile, options, reportSession, transportPool, snapshots, snapshots.getLast().getYear(), context);
+            }
+            success = true;
+        }
+        finally
+        {
+            metrics.finish(success);
+            exportMetrics(metrics, options);
+        }
+    }
+
+    static void exportMetrics(RunMetrics metrics, RunOptions options)
+    {
+        if (options.getMetricsDir() == null)
+            return;
+        try
+        {
+            metrics.export(options.getMetricsDir());
+            _LOGGER.info("Exported run metrics of {} to [{}]", metrics.getProfileId(), options.getMetricsDir());
+        }
+        catch (IOException e)
+        {
+            // Metrics are best effort, they must never fail the run itself
+            _LOGGER.warn("Unable to export run metrics to [{}]", options.getMetricsDir(), e);
+        }
+    }
+
+    static File reportFileOf(Path baseDirPath, YearMonth month)
+    {
+        return new File(Path.of
+        (
+            baseDirPath.toString(),
+            String.format
+            (
+                ReportHandler._REPORT_FILE_NAME_FORMAT,
+                month.getMonthValue(),
+                month.getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault()),
+                month.getYear()
+            )
+        ).toString());
+    }
+
+    /**
+     * Creates missing reports and fills in past weeks, in parallel when there are more reports than the usual
+     * previous and current month. The tasks block on report locks, parse permits and disk, so they get a pool
+     * of their own for the run rather than holding up the common pool everything else shares.
+     */
+    static List<ReportSnapshot> update(ReportSession reportSession, List<File> reports, RunContext context) throws IOException, InterruptedException
+    {
+        List<ReportSnapshot> snapshots = new ArrayList<>();
+        if (reports.size() <= 2)
+        {
+            for (File report : reports)
+                snapshots.add(update(reportSession, report, context));
+            return snapshots;
+        }
+        List<Callable<ReportSnapshot>> tasks = new ArrayList<>();
+        for (File report : reports)
+            tasks.add(LogContext.inherit(() -> update(reportSession, report, context)));
+        List<Future<ReportSnapshot>> futures;
+        try (ForkJoinPool pool = new ForkJoinPool(Math.min(reports.size(), Runtime.getRuntime().availableProcessors())))
+        {
+            futures = pool.invokeAll(tasks);
+        }
+        for (Future<ReportSnapshot> future : futures)
+        {
+            try
+            {
+                snapshots.add(future.get());
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof IOException cause)
+                    throw cause;
+                if (e.getCause() instanceof InterruptedException cause)
+                    throw cause;
+                if (e.getCause() instanceof RuntimeException cause)
+                    throw cause;
+                throw new IOException("Unable to update reports", e.getCause());
+            }
+        }
+        return snapshots;
+    }
+
+    static ReportSnapshot update(ReportSession reportSession, File report, RunContext context) throws IOException, InterruptedException
+    {
+        try (CloseableThreadContext.Instance logContext = LogContext.report(report))
+        {
+            return updateInContext(reportSession, report, context);
+        }
+    }
+
+    private static ReportSnapshot updateInContext(ReportSession reportSession, File report, RunContext context) throws IOException, InterruptedException
+    {
+        RunMetrics metrics = context.getMetrics();
+        reportSession.prepare(report);
+        // The full workbook is only loaded when there is something to fill in
+        ReportSnapshot snapshot = reportSession.snapshot(report);
+        if (snapshot.needsContentUpdate(context.getToday(), context.getContentProvider()))
+        {
+            ReportHandler handler = reportSession.handler(report);
+            long start = metrics.start();
+            handler.updateContent(context.getToday(), context.getContentProvider());
+            metrics.stop(RunMetrics._UPDATE_CONTENT, start);
+            snapshot = ReportSnapshot.of(handler);
+        }
+        return snapshot;
+    }
+
+    static void process(Profile profile, RunOptions options, ReportSession reportSession, TransportPool transportPool, List<ReportSnapshot> snapshots, Year currentYear, RunContext context) throws IOException, MessagingException, InterruptedException
+    {
+        String senderArg = profile.getSender();
+        boolean dryRunMode = options.isDryRunMode();
+        Outbox outbox = Outbox.of(profile.getBaseDir(), profile);
+        Map<String, Set<Integer>> queuedWeeks = outbox.pendingWeeks();
+        Map<String, Set<Integer>> toBeSentWeeks = new LinkedHashMap<>();
+        List<File> toBeSentReports = new ArrayList<>();
+
+        // Time to do some processing...
+        // 1. Load the report or reports
+        // 2. If there are any single past content that has not been sent and not already queued, then queue it
+        // 3. If there are not, then just let it be, next week task will handle that
+        StringBuilder finalUnsentContentsTitle = new StringBuilder();
+        for (ReportSnapshot snapshot : snapshots)
+        {
+            File report = snapshot.getFile();
+            Set<Integer> queued = queuedWeeks.getOrDefault(report.getName(), Set.of());
+            Set<Integer> weeks = new TreeSet<>();
+            StringBuilder sb = new StringBuilder();
+            for (MonthSheet.Week week : snapshot.getUnsentWeeks(context.getToday()))
+            {
+                if (queued.contains(week.getIndex()))
+                    continue;
+                weeks.add(week.getIndex());
+                sb.append(week.getPresentableIndex() + ", ");
+            }
+            if (sb.isEmpty())
+                continue;
+            sb = sb
+                .delete(sb.length() - 2, sb.length())
+                .insert(0, String.format("%s Week ", snapshot.getMonthFullname()));
+            _LOGGER.info("{} in {} have unsent content!", sb, report.getName());
+            finalUnsentContentsTitle.append(sb).append(" & ");
+            toBeSentWeeks.put(report.getName(), weeks);
+            toBeSentReports.add(report);
+        }
+
+        // Items set aside hold their weeks back but have nothing left to send
+        boolean hasQueuedMessages = !outbox.pending().isEmpty();
+        if (finalUnsentContentsTitle.isEmpty() && !hasQueuedMessages && !dryRunMode)
+        {
+            _LOGGER.info("No need to send anything at the moment.");
+            return;
+        }
+
+        if (senderArg == null || senderArg.isBlank())
+            throw new RuntimeException("No SMTP Outlook password was provided!");
+
+        // Everything from here on needs the mail classes, runs with nothing to send never load them
+        String title = finalUnsentContentsTitle.isEmpty() ? "" : finalUnsentContentsTitle.substring(0, finalUnsentContentsTitle.length() - 3);
+        MailSender.send(profile, options, reportSession, transportPool, outbox, title, toBeSentWeeks, toBeSentReports, currentYear, context);
+    }
+}
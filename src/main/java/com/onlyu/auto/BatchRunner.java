@@ -0,0 +1,107 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+public class BatchRunner
+{
+    private static final Logger _LOGGER = LogManager.getLogger(BatchRunner.class);
+
+    private final Path _manifest;
+    private final RunOptions _options;
+    private final Semaphore _parsePermits;
+
+    BatchRunner(Path manifest, RunOptions options)
+    {
+        _manifest = manifest;
+        _options = options;
+        _parsePermits = new Semaphore(options.getMaxConcurrentParses());
+    }
+
+    public static BatchRunner of(Path manifest, RunOptions options)
+    {
+        return new BatchRunner(manifest, options);
+    }
+
+    public static List<Profile> readManifest(Path manifest) throws IOException
+    {
+        List<Profile> profiles = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                Profile profile = Profile.parse(line);
+                if (profile != null)
+                    profiles.add(profile);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Runs every profile of the manifest on its own virtual thread and waits for all of them.
+     * Returns the number of profiles that failed.
+     */
+    public int run() throws IOException, InterruptedException
+    {
+        List<Profile> profiles = readManifest(_manifest);
+        _LOGGER.info("Loaded {} profile(s) from manifest [{}], at most {} workbook(s) parsed at a time", Unbox.box(profiles.size()), _manifest, Unbox.box(_options.getMaxConcurrentParses()));
+        int failures = runAll(profiles, _options, _parsePermits, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        _LOGGER.info("Batch finished, {} of {} profile(s) succeeded", Unbox.box(profiles.size() - failures), Unbox.box(profiles.size()));
+        return failures;
+    }
+
+    /**
+     * Runs the profiles concurrently, profiles sharing a base directory share its state ledger as well. Content
+     * providers are kept per profile, so that a caller running the same profiles again does not read every
+     * log again. Returns the number of profiles that failed.
+     */
+    static int runAll(List<Profile> profiles, RunOptions options, Semaphore parsePermits, Map<Path, StateLedger> ledgers, Map<Profile, ContentProvider> contentProviders) throws InterruptedException
+    {
+        List<Future<?>> futures = new ArrayList<>();
+        try (TransportPool transportPool = TransportPool.of(); ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (Profile profile : profiles)
+            {
+                StateLedger ledger = ledgers.computeIfAbsent(profile.getBaseDir().toAbsolutePath(), StateLedger::of);
+                futures.add(executor.submit(() ->
+                {
+                    ContentProvider contentProvider = contentProviders.computeIfAbsent(profile, key -> ContentProvider.of(options.getContentSource(), key));
+                    contentProvider.refresh();
+                    AutoUpdater.run(profile, options, parsePermits, transportPool, ledger, RunContext.of(options.getClock(), contentProvider, RunMetrics.of(profile)));
+                    return null;
+                }));
+            }
+        }
+        int failures = 0;
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                futures.get(i).get();
+            }
+            catch (ExecutionException e)
+            {
+                ++failures;
+                _LOGGER.error("Profile {} failed", profiles.get(i), e.getCause());
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,47 @@
+package com.onlyu.auto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Source of the content of past weeks. Reports of a run are filled in parallel, so implementations have to
+ * be safe to call from several threads, and are expected to read their source at most once per run.
+ */
+public interface ContentProvider
+{
+    String _RANDOM_SOURCE = "random";
+    String _WORK_LOG_SOURCE_PREFIX = "worklog:";
+    String _GIT_SOURCE_PREFIX = "git:";
+
+    /**
+     * Content of the given week, {@code null} while there is nothing to report for it.
+     */
+    WeekContent contentOf(MonthLayout.Week week) throws IOException;
+
+    /**
+     * Called before every run of a provider kept between runs, so that it notices when its source changed.
+     */
+    default void refresh()
+    {
+    }
+
+    /**
+     * Provider of a {@code --content} source. Relative paths are resolved against the base directory of the
+     * profile, so one option can point every profile of a batch to its own log.
+     */
+    static ContentProvider of(String source, Profile profile)
+    {
+        if (source == null || _RANDOM_SOURCE.equals(source))
+            return RandomContentProvider.of();
+        if (source.startsWith(_WORK_LOG_SOURCE_PREFIX))
+            return HoursLogContentProvider.of(resolve(profile, source.substring(_WORK_LOG_SOURCE_PREFIX.length())));
+        if (source.startsWith(_GIT_SOURCE_PREFIX))
+            return GitLogContentProvider.of(resolve(profile, source.substring(_GIT_SOURCE_PREFIX.length())), profile.getSender());
+        throw new IllegalArgumentException(String.format("Unknown content source [%s], expected %s, %s<file> or %s<repository>", source, _RANDOM_SOURCE, _WORK_LOG_SOURCE_PREFIX, _GIT_SOURCE_PREFIX));
+    }
+
+    private static Path resolve(Profile profile, String path)
+    {
+        return profile.getBaseDir().resolve(path);
+    }
+}
@@ -0,0 +1,169 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the process alive and runs every profile on a schedule: right after midnight, when the previous
+ * week may have just closed, at the latest after the configured interval, and shortly after a report of a
+ * watched base directory gets edited. State ledgers, work logs and the template stay in memory between runs,
+ * a change on disk only drops what belongs to the changed file, logs are read again once they changed.
+ */
+public class Daemon
+{
+    private static final Logger _LOGGER = LogManager.getLogger(Daemon.class);
+
+    public static final Duration _DEBOUNCE_DELAY = Duration.ofSeconds(2);
+    public static final Duration _MIDNIGHT_GRACE_PERIOD = Duration.ofSeconds(5);
+
+    private final List<Profile> _profiles;
+    private final RunOptions _options;
+    private final Semaphore _parsePermits;
+    private final Map<Path, StateLedger> _ledgers = new ConcurrentHashMap<>();
+    private final Map<Profile, ContentProvider> _contentProviders = new ConcurrentHashMap<>();
+
+    Daemon(List<Profile> profiles, RunOptions options)
+    {
+        _profiles = profiles;
+        _options = options;
+        _parsePermits = new Semaphore(options.getMaxConcurrentParses());
+    }
+
+    public static Daemon of(List<Profile> profiles, RunOptions options)
+    {
+        return new Daemon(profiles, options);
+    }
+
+    /**
+     * Runs until the thread is interrupted.
+     */
+    public void run() throws IOException, InterruptedException
+    {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService())
+        {
+            Map<WatchKey, Path> watchedDirs = new HashMap<>();
+            Set<Path> baseDirs = new LinkedHashSet<>();
+            for (Profile profile : _profiles)
+                baseDirs.add(profile.getBaseDir().toAbsolutePath());
+            for (Path baseDir : baseDirs)
+            {
+                watchedDirs.put(baseDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), baseDir);
+                _LOGGER.info("Watching base directory [{}]", baseDir);
+            }
+            _LOGGER.info("Started the timesheet updater daemon for {} profile(s), running at least every {}", Unbox.box(_profiles.size()), _options.getDaemonInterval());
+
+            LocalDateTime nextRun = LocalDateTime.now();
+            while (true)
+            {
+                if (!LocalDateTime.now().isBefore(nextRun))
+                {
+                    tick();
+                    nextRun = nextScheduledRun(LocalDateTime.now());
+                    _LOGGER.info("Next scheduled run at {}", nextRun);
+                }
+                long waitMillis = Math.max(0, Duration.between(LocalDateTime.now(), nextRun).toMillis());
+                WatchKey key = watchService.poll(waitMillis, TimeUnit.MILLISECONDS);
+                if (key == null)
+                    continue;
+                Path baseDir = watchedDirs.get(key);
+                boolean reportsChanged = false;
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                    {
+                        // Lost track of what changed, start over from the files
+                        _ledgers.remove(baseDir);
+                        TemplateCache.invalidate();
+                        reportsChanged = true;
+                        continue;
+                    }
+                    reportsChanged |= onChange(baseDir, (Path)event.context());
+                }
+                key.reset();
+                if (reportsChanged)
+                {
+                    LocalDateTime debounced = LocalDateTime.now().plus(_DEBOUNCE_DELAY);
+                    nextRun = debounced.isBefore(nextRun) ? debounced : nextRun;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the cached state of the changed file. Returns whether a report was edited by someone else,
+     * writes of the daemon itself are already known to the ledger and do not trigger another run. A report
+     * that cannot be looked at right now, deleted or locked while the event comes in, counts as edited.
+     */
+    boolean onChange(Path baseDir, Path fileName)
+    {
+        String name = fileName.toString();
+        if (name.equals(ReportHandler._TEMPLATE_FILE_NAME))
+        {
+            _LOGGER.info("Template [{}] changed, reloading it on next use", baseDir.resolve(fileName));
+            TemplateCache.invalidate();
+            return false;
+        }
+        if (!isReportFileName(name))
+            return false;
+        File report = baseDir.resolve(fileName).toFile();
+        StateLedger ledger = _ledgers.get(baseDir);
+        if (ledger == null)
+            return false;
+        try
+        {
+            if (ledger.isUpToDate(report))
+                return false;
+            _LOGGER.info("Report [{}] changed on disk", report.getAbsolutePath());
+        }
+        catch (IOException | RuntimeException e)
+        {
+            _LOGGER.warn("Unable to check report [{}], scanning it again on the next run: {}", report.getAbsolutePath(), e.getMessage());
+        }
+        ledger.invalidate(report);
+        return true;
+    }
+
+    void tick() throws InterruptedException
+    {
+        _LOGGER.info("Running {} profile(s) at {}", Unbox.box(_profiles.size()), LocalDateTime.now());
+        int failures = BatchRunner.runAll(_profiles, _options, _parsePermits, _ledgers, _contentProviders);
+        _LOGGER.info("Run finished, {} of {} profile(s) succeeded", Unbox.box(_profiles.size() - failures), Unbox.box(_profiles.size()));
+    }
+
+    /**
+     * Right after the next midnight, or after the interval if that comes first.
+     */
+    LocalDateTime nextScheduledRun(LocalDateTime now)
+    {
+        LocalDateTime midnight = LocalDate.from(now).plusDays(1).atStartOfDay().plus(_MIDNIGHT_GRACE_PERIOD);
+        LocalDateTime interval = now.plus(_options.getDaemonInterval());
+        return interval.isBefore(midnight) ? interval : midnight;
+    }
+
+    static boolean isReportFileName(String name)
+    {
+        String prefix = ReportHandler._REPORT_FILE_NAME_FORMAT.substring(0, ReportHandler._REPORT_FILE_NAME_FORMAT.indexOf('%'));
+        return name.startsWith(prefix) && name.endsWith("." + ReportHandler._FINAL_OUTPUT_FILE_EXTENSION);
+    }
+}
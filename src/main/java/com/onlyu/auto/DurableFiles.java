@@ -0,0 +1,97 @@
+package com.onlyu.auto;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The one way files get replaced: written to a uniquely named temp file next to the target, forced to disk,
+ * then moved over the target in one step. Readers and a crash at any point see either the old or the new file,
+ * never a missing or half written one, and concurrent writers never share a temp file. Every failure is thrown.
+ */
+public final class DurableFiles
+{
+    public static final String _TEMP_FILE_EXTENSION = ".tmp";
+
+    @FunctionalInterface
+    public interface Content
+    {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    private DurableFiles()
+    {
+    }
+
+    public static void write(Path target, byte[] bytes) throws IOException
+    {
+        write(target, outputStream -> outputStream.write(bytes));
+    }
+
+    public static void write(Path target, Content content) throws IOException
+    {
+        Path directory = target.toAbsolutePath().getParent();
+        // Hidden and unique, nobody else writes to it and directory watchers can tell it apart from the target
+        Path temp = directory.resolve(String.format(".%s.%016x%s", target.getFileName(), ThreadLocalRandom.current().nextLong(), _TEMP_FILE_EXTENSION));
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+            {
+                OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel));
+                content.writeTo(outputStream);
+                outputStream.flush();
+                channel.force(true);
+            }
+            move(temp, target);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            try
+            {
+                Files.deleteIfExists(temp);
+            }
+            catch (IOException suppressed)
+            {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        syncDirectory(directory);
+    }
+
+    private static void move(Path source, Path target) throws IOException
+    {
+        try
+        {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            // Same directory, so this only happens on file systems without atomic renames at all
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Makes the rename itself durable. Not every platform can open a directory, there the move has to do.
+     */
+    private static void syncDirectory(Path directory)
+    {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ))
+        {
+            channel.force(true);
+        }
+        catch (IOException e)
+        {
+            // Windows, for one, does not allow it
+        }
+    }
+}
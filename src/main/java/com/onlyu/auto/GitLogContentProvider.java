@@ -0,0 +1,151 @@
+package com.onlyu.auto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content from the commit history of a local git repository, descriptions are the commit subjects. Commits
+ * do not say how long they took, so the time between two commits counts as work when they are at most
+ * {@link #_SESSION_GAP} apart, and the first commit of a session counts as {@link #_SESSION_ALLOWANCE}.
+ * Commits are streamed newest first straight from {@code git log}, one commit is held back at a time.
+ */
+public class GitLogContentProvider extends WorkLogContentProvider
+{
+    public static final Duration _SESSION_GAP = Duration.ofHours(2);
+    public static final Duration _SESSION_ALLOWANCE = Duration.ofMinutes(30);
+    public static final String _FIELD_SEPARATOR = "\u001f";
+
+    private final Path _repository;
+    private final String _author;
+    private final String _note;
+
+    GitLogContentProvider(Path repository, String author)
+    {
+        _repository = repository.toAbsolutePath().normalize();
+        _author = author;
+        _note = _repository.getFileName() == null ? "" : _repository.getFileName().toString();
+    }
+
+    /**
+     * Commits of the given author only, all commits when there is none.
+     */
+    public static GitLogContentProvider of(Path repository, String author)
+    {
+        return new GitLogContentProvider(repository, author);
+    }
+
+    @Override
+    protected String getSourceName()
+    {
+        return String.format("git log of %s", _repository);
+    }
+
+    /**
+     * The commit checked out, new commits and switched branches both change it.
+     */
+    @Override
+    protected String getSourceVersion() throws IOException
+    {
+        Process process = new ProcessBuilder("git", "-C", _repository.toString(), "rev-parse", "HEAD")
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        String head;
+        try (InputStream inputStream = process.getInputStream())
+        {
+            head = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8).strip();
+        }
+        try
+        {
+            // No commit yet, or not a repository at all, reading the log tells which
+            return process.waitFor() == 0 ? head : null;
+        }
+        catch (InterruptedException e)
+        {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading HEAD of " + _repository, e);
+        }
+    }
+
+    @Override
+    protected void read() throws IOException
+    {
+        List<String> command = new ArrayList<>(List.of("git", "-C", _repository.toString(), "log", "--no-merges", "--date=iso-strict", "--pretty=format:%ad%x1f%s"));
+        if (_author != null && !_author.isBlank())
+            command.add("--author=" + _author);
+        Process process = new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)))
+        {
+            // The newer commit waits until the one before it tells how long it took
+            LocalDateTime newerAt = null;
+            String newerSubject = null;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                ++lineNumber;
+                int separator = line.indexOf(_FIELD_SEPARATOR);
+                if (separator < 0)
+                {
+                    skip(lineNumber, "No date");
+                    continue;
+                }
+                LocalDateTime at;
+                try
+                {
+                    // Local time of the author, that is when the work happened for them
+                    at = OffsetDateTime.parse(line.substring(0, separator)).toLocalDateTime();
+                }
+                catch (DateTimeParseException e)
+                {
+                    skip(lineNumber, e.getMessage());
+                    continue;
+                }
+                if (newerAt != null)
+                    recordCommit(newerAt, newerSubject, Duration.between(at, newerAt));
+                newerAt = at;
+                newerSubject = line.substring(separator + 1);
+            }
+            if (newerAt != null)
+                recordCommit(newerAt, newerSubject, null);
+        }
+        try
+        {
+            int exitCode = process.waitFor();
+            if (exitCode != 0)
+                throw new IOException(String.format("git log in %s failed with exit code %d", _repository, exitCode));
+        }
+        catch (InterruptedException e)
+        {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading git log of " + _repository, e);
+        }
+    }
+
+    /**
+     * Records a commit given how long after the previous one it was made, {@code null} for the very first commit.
+     */
+    private void recordCommit(LocalDateTime at, String subject, Duration sincePrevious)
+    {
+        Duration worked = sincePrevious == null || sincePrevious.isNegative() || sincePrevious.compareTo(_SESSION_GAP) > 0
+            ? _SESSION_ALLOWANCE
+            : sincePrevious;
+        LocalDateTime beganAt = at.minus(worked);
+        LocalTime beginAt = beganAt.toLocalDate().equals(at.toLocalDate()) ? beganAt.toLocalTime() : LocalTime.MIDNIGHT;
+        record(at.toLocalDate(), beginAt, at.toLocalTime(), worked.toMinutes() / 60.0, subject, _note);
+    }
+}
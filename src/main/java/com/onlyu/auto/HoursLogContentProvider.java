@@ -0,0 +1,276 @@
+package com.onlyu.auto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Content from an hours log kept by hand or exported from a time tracker, one entry per line, either CSV with a
+ * header line or JSON Lines. Recognized fields are {@code date} ({@code 2024-03-15}), {@code hours},
+ * {@code begin} and {@code end} ({@code 18:00}, hours are taken from them when missing), {@code description}
+ * and {@code note}. Other fields are ignored, lines starting with {@code #} are comments.
+ */
+public class HoursLogContentProvider extends WorkLogContentProvider
+{
+    public static final String _COMMENT_PREFIX = "#";
+    public static final String _DATE_FIELD = "date";
+    public static final String _HOURS_FIELD = "hours";
+    public static final String _BEGIN_FIELD = "begin";
+    public static final String _END_FIELD = "end";
+    public static final String _DESCRIPTION_FIELD = "description";
+    public static final String _NOTE_FIELD = "note";
+    public static final List<String> _JSON_LINES_EXTENSIONS = List.of(".jsonl", ".ndjson", ".json");
+
+    private final Path _log;
+    private final boolean _jsonLines;
+
+    HoursLogContentProvider(Path log)
+    {
+        _log = log;
+        String fileName = log.getFileName().toString().toLowerCase(Locale.ROOT);
+        _jsonLines = _JSON_LINES_EXTENSIONS.stream().anyMatch(fileName::endsWith);
+    }
+
+    public static HoursLogContentProvider of(Path log)
+    {
+        return new HoursLogContentProvider(log);
+    }
+
+    @Override
+    protected String getSourceName()
+    {
+        return _log.toString();
+    }
+
+    @Override
+    protected String getSourceVersion() throws IOException
+    {
+        BasicFileAttributes attributes = Files.readAttributes(_log, BasicFileAttributes.class);
+        return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+    }
+
+    @Override
+    protected void read() throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(_log, StandardCharsets.UTF_8))
+        {
+            List<String> header = null;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                ++lineNumber;
+                if (line.isBlank() || line.startsWith(_COMMENT_PREFIX))
+                    continue;
+                try
+                {
+                    Map<String, String> fields;
+                    if (_jsonLines)
+                        fields = parseJsonObject(line);
+                    else if (header == null)
+                    {
+                        header = new ArrayList<>();
+                        for (String name : parseCsvLine(line))
+                            header.add(name.strip().toLowerCase(Locale.ROOT));
+                        continue;
+                    }
+                    else
+                        fields = toFields(header, parseCsvLine(line));
+                    accept(fields);
+                }
+                catch (IllegalArgumentException | DateTimeParseException e)
+                {
+                    skip(lineNumber, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void accept(Map<String, String> fields)
+    {
+        String date = fields.get(_DATE_FIELD);
+        if (date == null || date.isBlank())
+            throw new IllegalArgumentException("No date");
+        // Timestamps are fine as well, only the day counts
+        LocalDate day = LocalDate.parse(date.strip().length() > 10 ? date.strip().substring(0, 10) : date.strip());
+        LocalTime beginAt = parseTime(fields.get(_BEGIN_FIELD));
+        LocalTime endAt = parseTime(fields.get(_END_FIELD));
+        double hours;
+        String value = fields.get(_HOURS_FIELD);
+        if (value != null && !value.isBlank())
+            hours = Double.parseDouble(value.strip());
+        else if (beginAt != null && endAt != null)
+        {
+            Duration duration = Duration.between(beginAt, endAt);
+            // Past midnight
+            if (duration.isNegative())
+                duration = duration.plusDays(1);
+            hours = duration.toMinutes() / 60.0;
+        }
+        else
+            throw new IllegalArgumentException("Neither hours nor begin and end");
+        if (!(hours >= 0) || Double.isInfinite(hours))
+            throw new IllegalArgumentException("Invalid hours " + value);
+        record(day, beginAt, endAt, hours, fields.get(_DESCRIPTION_FIELD), fields.get(_NOTE_FIELD));
+    }
+
+    private static LocalTime parseTime(String value)
+    {
+        return value == null || value.isBlank() ? null : LocalTime.parse(value.strip());
+    }
+
+    private static Map<String, String> toFields(List<String> header, List<String> values)
+    {
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.size() && i < values.size(); i++)
+            fields.put(header.get(i), values.get(i));
+        return fields;
+    }
+
+    /**
+     * Splits a CSV line, fields may be quoted and quotes inside them doubled. Quoted line breaks are not supported.
+     */
+    static List<String> parseCsvLine(String line)
+    {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+            if (quoted)
+            {
+                if (c != '"')
+                    value.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+                    value.append(line.charAt(++i));
+                else
+                    quoted = false;
+            }
+            else if (c == '"')
+                quoted = true;
+            else if (c == ',')
+            {
+                values.add(value.toString());
+                value.setLength(0);
+            }
+            else
+                value.append(c);
+        }
+        if (quoted)
+            throw new IllegalArgumentException("Unterminated quote");
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Reads a flat JSON object, values are kept as text. Nested objects and arrays are not supported.
+     */
+    static Map<String, String> parseJsonObject(String line)
+    {
+        Map<String, String> fields = new HashMap<>();
+        int[] position = { skipWhitespace(line, 0) };
+        expect(line, position, '{');
+        if (peek(line, position) == '}')
+            return fields;
+        while (true)
+        {
+            String name = parseJsonString(line, position);
+            expect(line, position, ':');
+            fields.put(name.toLowerCase(Locale.ROOT), parseJsonValue(line, position));
+            char c = peek(line, position);
+            ++position[0];
+            if (c == '}')
+                return fields;
+            if (c != ',')
+                throw new IllegalArgumentException("Expected , or } at " + (position[0] - 1));
+        }
+    }
+
+    private static String parseJsonValue(String line, int[] position)
+    {
+        char c = peek(line, position);
+        if (c == '"')
+            return parseJsonString(line, position);
+        if (c == '{' || c == '[')
+            throw new IllegalArgumentException("Nested values are not supported");
+        int start = position[0];
+        while (position[0] < line.length() && ",}".indexOf(line.charAt(position[0])) < 0)
+            ++position[0];
+        String token = line.substring(start, position[0]).strip();
+        if (token.isEmpty())
+            throw new IllegalArgumentException("Missing value at " + start);
+        return "null".equals(token) ? null : token;
+    }
+
+    private static String parseJsonString(String line, int[] position)
+    {
+        expect(line, position, '"');
+        StringBuilder value = new StringBuilder();
+        while (position[0] < line.length())
+        {
+            char c = line.charAt(position[0]++);
+            if (c == '"')
+                return value.toString();
+            if (c != '\\')
+            {
+                value.append(c);
+                continue;
+            }
+            if (position[0] >= line.length())
+                break;
+            char escaped = line.charAt(position[0]++);
+            switch (escaped)
+            {
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' ->
+                {
+                    if (position[0] + 4 > line.length())
+                        throw new IllegalArgumentException("Truncated unicode escape");
+                    value.append((char)Integer.parseInt(line.substring(position[0], position[0] + 4), 16));
+                    position[0] += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    private static void expect(String line, int[] position, char expected)
+    {
+        if (peek(line, position) != expected)
+            throw new IllegalArgumentException(String.format("Expected %s at %d", expected, position[0]));
+        ++position[0];
+    }
+
+    private static char peek(String line, int[] position)
+    {
+        position[0] = skipWhitespace(line, position[0]);
+        if (position[0] >= line.length())
+            throw new IllegalArgumentException("Unexpected end of line");
+        return line.charAt(position[0]);
+    }
+
+    private static int skipWhitespace(String line, int position)
+    {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position)))
+            ++position;
+        return position;
+    }
+}
@@ -0,0 +1,159 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Runs a batch of synthetic profiles end to end against a {@link LocalSmtpServer}, to size batch and daemon
+ * deployments without a real mail account. Every profile gets a fresh base directory of its own, so the first
+ * round creates, fills and sends two reports per profile; later rounds run the same profiles again with
+ * nothing left to send, which is what most daemon ticks look like.
+ */
+public class LoadHarness
+{
+    private static final Logger _LOGGER = LogManager.getLogger(LoadHarness.class);
+
+    public static final String _SENDER_FORMAT = "load-%04d@localhost";
+    public static final String _PASSWORD = "load";
+    public static final String _RECIPIENTS = "team@localhost";
+    public static final String _PROJECT_NAME = "Load";
+    public static final String _BASE_DIR_FORMAT = "profile-%04d";
+
+    private final Path _workDir;
+    private final int _profileCount;
+    private final RunOptions _options;
+
+    LoadHarness(Path workDir, int profileCount, RunOptions options)
+    {
+        _workDir = workDir;
+        _profileCount = profileCount;
+        _options = options;
+    }
+
+    public static LoadHarness of(Path workDir, int profileCount, RunOptions options)
+    {
+        if (profileCount < 1)
+            throw new IllegalArgumentException("Number of profiles must be at least 1");
+        return new LoadHarness(workDir, profileCount, options);
+    }
+
+    /**
+     * Runs every round and returns the number of runs that failed over all of them.
+     */
+    public int run() throws IOException, InterruptedException
+    {
+        List<Profile> profiles = createProfiles();
+        int failures = 0;
+        try (LocalSmtpServer server = LocalSmtpServer.start(0, _options.getStandInLatency(), _options.getStandInFailureRate());
+             TransportPool transportPool = TransportPool.of())
+        {
+            // The stand-in takes the place of whatever endpoint was given
+            RunOptions options = _options.withMailEndpoint(server.getEndpoint());
+            Semaphore parsePermits = new Semaphore(options.getMaxConcurrentParses());
+            Map<Path, StateLedger> ledgers = new ConcurrentHashMap<>();
+            for (int round = 1; round <= options.getLoadRounds(); round++)
+                failures += runRound(round, profiles, options, parsePermits, transportPool, ledgers, server);
+        }
+        return failures;
+    }
+
+    private List<Profile> createProfiles() throws IOException
+    {
+        Files.createDirectories(_workDir);
+        try (Stream<Path> entries = Files.list(_workDir))
+        {
+            if (entries.findAny().isPresent())
+                throw new IOException("Load test directory must be empty: " + _workDir.toAbsolutePath());
+        }
+        List<Profile> profiles = new ArrayList<>();
+        for (int i = 1; i <= _profileCount; i++)
+        {
+            Path baseDir = Files.createDirectory(_workDir.resolve(String.format(_BASE_DIR_FORMAT, i)));
+            profiles.add(Profile.of(baseDir, String.format(_SENDER_FORMAT, i), _PASSWORD, _RECIPIENTS, "", _PROJECT_NAME));
+        }
+        _LOGGER.info("Created {} synthetic base director{} in [{}]", Unbox.box(profiles.size()), profiles.size() == 1 ? "y" : "ies", _workDir);
+        return profiles;
+    }
+
+    private int runRound(int round, List<Profile> profiles, RunOptions options, Semaphore parsePermits, TransportPool transportPool, Map<Path, StateLedger> ledgers, LocalSmtpServer server) throws InterruptedException
+    {
+        long messagesBefore = server.getMessages();
+        long bytesBefore = server.getBytes();
+        long rejectedBefore = server.getFailures();
+        List<Future<Long>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (Profile profile : profiles)
+            {
+                StateLedger ledger = ledgers.computeIfAbsent(profile.getBaseDir().toAbsolutePath(), StateLedger::of);
+                futures.add(executor.submit(() ->
+                {
+                    long runStart = System.nanoTime();
+                    AutoUpdater.run(profile, options, parsePermits, transportPool, ledger);
+                    return System.nanoTime() - runStart;
+                }));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        int failures = 0;
+        long[] latencies = new long[futures.size()];
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                latencies[i - failures] = futures.get(i).get();
+            }
+            catch (ExecutionException e)
+            {
+                ++failures;
+                _LOGGER.error("Profile {} failed", profiles.get(i), e.getCause());
+            }
+        }
+        long[] succeeded = Arrays.copyOf(latencies, futures.size() - failures);
+        Arrays.sort(succeeded);
+        _LOGGER.info
+        (
+            "Round {}: {} run(s) in {} ms, {} runs/s, p50 {} ms, p99 {} ms, {} failed, {} email(s) accepted and {} rejected by the stand-in, {} byte(s) sent",
+            Unbox.box(round),
+            Unbox.box(futures.size()),
+            Unbox.box(elapsed / 1_000_000),
+            String.format(Locale.ROOT, "%.1f", futures.size() / (elapsed / 1e9)),
+            Unbox.box(percentile(succeeded, 0.50) / 1_000_000),
+            Unbox.box(percentile(succeeded, 0.99) / 1_000_000),
+            Unbox.box(failures),
+            Unbox.box(server.getMessages() - messagesBefore),
+            Unbox.box(server.getFailures() - rejectedBefore),
+            Unbox.box(server.getBytes() - bytesBefore)
+        );
+        return failures;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values, {@code 0} when there are none.
+     */
+    static long percentile(long[] sorted, double percentile)
+    {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int)Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
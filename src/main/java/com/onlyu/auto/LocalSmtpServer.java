@@ -0,0 +1,202 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Just enough of an SMTP server, on the loopback interface and in plain text, to take the emails of local
+ * runs. Every reply can be held back by a fixed latency and a share of the messages can be turned down with
+ * a transient error, messages that are accepted are only counted, never stored.
+ */
+public class LocalSmtpServer implements AutoCloseable
+{
+    private static final Logger _LOGGER = LogManager.getLogger(LocalSmtpServer.class);
+
+    public static final String _HOST = "localhost";
+    public static final String _INJECTED_FAILURE_REPLY = "451 4.3.0 Injected failure, try again later";
+
+    private final ServerSocket _serverSocket;
+    private final Duration _latency;
+    private final double _failureRate;
+    private final ExecutorService _executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("smtp-stand-in-", 0).factory());
+    private final AtomicLong _connections = new AtomicLong();
+    private final AtomicLong _messages = new AtomicLong();
+    private final AtomicLong _bytes = new AtomicLong();
+    private final AtomicLong _failures = new AtomicLong();
+
+    LocalSmtpServer(ServerSocket serverSocket, Duration latency, double failureRate)
+    {
+        _serverSocket = serverSocket;
+        _latency = latency;
+        _failureRate = failureRate;
+    }
+
+    /**
+     * Server listening on the given port of the loopback interface, {@code 0} picks a free one.
+     */
+    public static LocalSmtpServer start(int port, Duration latency, double failureRate) throws IOException
+    {
+        LocalSmtpServer server = new LocalSmtpServer(new ServerSocket(port, 256, InetAddress.getLoopbackAddress()), latency, failureRate);
+        server._executor.submit(server::accept);
+        _LOGGER.info("Local SMTP stand-in listening on {}, {} ms per reply, {}% of the messages failing", server.getEndpoint(), Unbox.box(latency.toMillis()), Unbox.box(failureRate * 100));
+        return server;
+    }
+
+    public MailEndpoint getEndpoint()
+    {
+        return MailEndpoint.of(_HOST, _serverSocket.getLocalPort(), MailEndpoint.Security.NONE);
+    }
+
+    public long getConnections()
+    {
+        return _connections.get();
+    }
+
+    public long getMessages()
+    {
+        return _messages.get();
+    }
+
+    /**
+     * Size of the accepted messages as they came over the wire, dot stuffing and line breaks included.
+     */
+    public long getBytes()
+    {
+        return _bytes.get();
+    }
+
+    public long getFailures()
+    {
+        return _failures.get();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        _serverSocket.close();
+        _executor.shutdownNow();
+    }
+
+    private void accept()
+    {
+        while (!_serverSocket.isClosed())
+        {
+            try
+            {
+                Socket socket = _serverSocket.accept();
+                _connections.incrementAndGet();
+                _executor.submit(() -> serve(socket));
+            }
+            catch (IOException e)
+            {
+                if (!_serverSocket.isClosed())
+                    _LOGGER.warn("Local SMTP stand-in stopped accepting connections: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        try (socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+             Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1))
+        {
+            reply(writer, "220 " + _HOST + " ESMTP stand-in ready");
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String command = line.length() < 4 ? line.toUpperCase(Locale.ROOT) : line.substring(0, 4).toUpperCase(Locale.ROOT);
+                switch (command)
+                {
+                    case "EHLO" -> reply(writer, "250-" + _HOST + "\r\n250 AUTH PLAIN LOGIN");
+                    case "HELO" -> reply(writer, "250 " + _HOST);
+                    case "AUTH" -> authenticate(line, reader, writer);
+                    case "MAIL", "RCPT", "RSET", "NOOP" -> reply(writer, "250 2.0.0 OK");
+                    case "DATA" -> receive(reader, writer);
+                    case "QUIT" ->
+                    {
+                        reply(writer, "221 2.0.0 Bye");
+                        return;
+                    }
+                    default -> reply(writer, "502 5.5.1 Command not implemented");
+                }
+            }
+        }
+        catch (SocketException e)
+        {
+            // Client went away, which is what pooled connections do when the process ends
+        }
+        catch (IOException | InterruptedException e)
+        {
+            _LOGGER.warn("Local SMTP stand-in dropped a connection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Any credentials will do, only the exchange itself matters.
+     */
+    private void authenticate(String line, BufferedReader reader, Writer writer) throws IOException, InterruptedException
+    {
+        String[] words = line.split(" ");
+        if (words.length > 1 && "LOGIN".equalsIgnoreCase(words[1]))
+        {
+            reply(writer, "334 VXNlcm5hbWU6");
+            reader.readLine();
+            reply(writer, "334 UGFzc3dvcmQ6");
+            reader.readLine();
+        }
+        else if (words.length == 2)
+        {
+            // PLAIN without an initial response
+            reply(writer, "334 ");
+            reader.readLine();
+        }
+        reply(writer, "235 2.7.0 Authentication successful");
+    }
+
+    private void receive(BufferedReader reader, Writer writer) throws IOException, InterruptedException
+    {
+        reply(writer, "354 End data with <CR><LF>.<CR><LF>");
+        long bytes = 0;
+        String line;
+        while ((line = reader.readLine()) != null && !".".equals(line))
+            bytes += line.length() + 2;
+        if (_failureRate > 0 && ThreadLocalRandom.current().nextDouble() < _failureRate)
+        {
+            _failures.incrementAndGet();
+            reply(writer, _INJECTED_FAILURE_REPLY);
+            return;
+        }
+        _messages.incrementAndGet();
+        _bytes.addAndGet(bytes);
+        reply(writer, "250 2.0.0 Message accepted");
+    }
+
+    private void reply(Writer writer, String reply) throws IOException, InterruptedException
+    {
+        if (!_latency.isZero())
+            Thread.sleep(_latency);
+        writer.write(reply);
+        writer.write("\r\n");
+        writer.flush();
+    }
+}
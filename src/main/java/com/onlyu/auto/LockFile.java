@@ -0,0 +1,102 @@
+package com.onlyu.auto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exclusive lock on a path shared by threads of this process and by other processes alike. The operating system
+ * lock sits on a hidden sidecar file, as the guarded file itself gets replaced on every write, and a lock of the
+ * JVM can not be taken twice, hence the additional in-process permit. The holder may release it from any thread.
+ */
+public class LockFile implements Closeable
+{
+    public static final String _LOCK_FILE_EXTENSION = ".lock";
+    public static final Duration _DEFAULT_TIMEOUT = Duration.ofMinutes(5);
+    public static final long _POLL_INTERVAL_MILLIS = 50;
+
+    private static final Map<Path, Semaphore> _PERMITS = new ConcurrentHashMap<>();
+
+    private final Path _path;
+    private final Semaphore _permit;
+    private final FileChannel _channel;
+    private final FileLock _lock;
+
+    LockFile(Path path, Semaphore permit, FileChannel channel, FileLock lock)
+    {
+        _path = path;
+        _permit = permit;
+        _channel = channel;
+        _lock = lock;
+    }
+
+    /**
+     * Sidecar lock file guarding the given file, {@code .<file name>.lock} in the same directory.
+     */
+    public static Path lockFileOf(Path guarded)
+    {
+        return guarded.toAbsolutePath().resolveSibling("." + guarded.getFileName() + _LOCK_FILE_EXTENSION);
+    }
+
+    /**
+     * Waits for the lock up to the timeout, fails with an {@link IOException} if somebody holds it for longer.
+     */
+    public static LockFile acquire(Path lockFile, Duration timeout) throws IOException, InterruptedException
+    {
+        Path path = lockFile.toAbsolutePath().normalize();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Semaphore permit = _PERMITS.computeIfAbsent(path, key -> new Semaphore(1));
+        if (!permit.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS))
+            throw new IOException(String.format("Timed out after %s waiting for %s, held by another run of this process", timeout, path));
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock;
+            while ((lock = channel.tryLock()) == null)
+            {
+                if (System.nanoTime() > deadline)
+                    throw new IOException(String.format("Timed out after %s waiting for %s, held by another process", timeout, path));
+                Thread.sleep(_POLL_INTERVAL_MILLIS);
+            }
+            return new LockFile(path, permit, channel, lock);
+        }
+        catch (IOException | InterruptedException | RuntimeException e)
+        {
+            if (channel != null)
+                channel.close();
+            permit.release();
+            throw e;
+        }
+    }
+
+    public Path getPath()
+    {
+        return _path;
+    }
+
+    /**
+     * Releases the lock. The lock file stays, deleting it could let two processes lock two different files.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            _lock.release();
+            _channel.close();
+        }
+        finally
+        {
+            _permit.release();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.CloseableThreadContext;
+import org.apache.logging.log4j.ThreadContext;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Thread context every log line of a run is tagged with, the profile for the whole run and the report while
+ * one is being worked on, so the output of concurrent runs stays attributable. The context stays with the
+ * thread, work handed over to another thread takes it along through {@link #inherit(Callable)}.
+ */
+public final class LogContext
+{
+    public static final String _PROFILE_KEY = "profile";
+    public static final String _REPORT_KEY = "report";
+
+    private LogContext()
+    {
+    }
+
+    public static CloseableThreadContext.Instance profile(Profile profile)
+    {
+        return CloseableThreadContext.put(_PROFILE_KEY, profile.getProjectName() + ":" + profile.getSender());
+    }
+
+    public static CloseableThreadContext.Instance report(File report)
+    {
+        return CloseableThreadContext.put(_REPORT_KEY, report.getName());
+    }
+
+    /**
+     * Task running under the context of the thread that created it.
+     */
+    public static <T> Callable<T> inherit(Callable<T> task)
+    {
+        Map<String, String> context = ThreadContext.getImmutableContext();
+        return () ->
+        {
+            try (CloseableThreadContext.Instance ignored = CloseableThreadContext.putAll(context))
+            {
+                return task.call();
+            }
+        };
+    }
+
+    public static Runnable inherit(Runnable task)
+    {
+        Map<String, String> context = ThreadContext.getImmutableContext();
+        return () ->
+        {
+            try (CloseableThreadContext.Instance ignored = CloseableThreadContext.putAll(context))
+            {
+                task.run();
+            }
+        };
+    }
+}
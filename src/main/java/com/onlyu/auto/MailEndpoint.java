@@ -0,0 +1,143 @@
+package com.onlyu.auto;
+
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Mail server the emails go out through, Gmail over implicit TLS unless {@code --smtp=} says otherwise.
+ * Written as {@code smtps://host:port}, {@code smtp+starttls://host:port} or {@code smtp://host:port}, the
+ * last one in plain text, meant for a local stand-in such as {@link LocalSmtpServer}.
+ */
+public class MailEndpoint
+{
+    public enum Security
+    {
+        SSL("smtps", 465),
+        STARTTLS("smtp+starttls", 587),
+        NONE("smtp", 25);
+
+        private final String _scheme;
+        private final int _defaultPort;
+
+        Security(String scheme, int defaultPort)
+        {
+            _scheme = scheme;
+            _defaultPort = defaultPort;
+        }
+
+        public String getScheme()
+        {
+            return _scheme;
+        }
+
+        public int getDefaultPort()
+        {
+            return _defaultPort;
+        }
+    }
+
+    public static final String _SCHEME_SEPARATOR = "://";
+    public static final MailEndpoint _DEFAULT = new MailEndpoint("smtp.gmail.com", 465, Security.SSL);
+
+    private final String _host;
+    private final int _port;
+    private final Security _security;
+
+    MailEndpoint(String host, int port, Security security)
+    {
+        _host = host;
+        _port = port;
+        _security = security;
+    }
+
+    public static MailEndpoint of(String host, int port, Security security)
+    {
+        if (host == null || host.isBlank())
+            throw new IllegalArgumentException("Mail server host is missing");
+        if (port < 1 || port > 65535)
+            throw new IllegalArgumentException("Invalid mail server port " + port);
+        return new MailEndpoint(host, port, security);
+    }
+
+    /**
+     * Endpoint from its {@code scheme://host:port} form, the scheme defaults to {@code smtps} and the port to the
+     * usual one of the scheme.
+     */
+    public static MailEndpoint parse(String value)
+    {
+        Security security = Security.SSL;
+        String address = value;
+        int separator = value.indexOf(_SCHEME_SEPARATOR);
+        if (separator >= 0)
+        {
+            String scheme = value.substring(0, separator);
+            security = null;
+            for (Security candidate : Security.values())
+            {
+                if (candidate.getScheme().equalsIgnoreCase(scheme))
+                    security = candidate;
+            }
+            if (security == null)
+                throw new IllegalArgumentException("Unknown mail server scheme: " + value);
+            address = value.substring(separator + _SCHEME_SEPARATOR.length());
+        }
+        int colon = address.lastIndexOf(':');
+        if (colon < 0)
+            return of(address, security.getDefaultPort(), security);
+        return of(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)), security);
+    }
+
+    /**
+     * Session properties for an authenticated connection to this endpoint. Connecting, and every read and
+     * write afterwards, gives up after the timeout, so a silent server cannot hold a run forever.
+     */
+    public Properties toProperties(Duration timeout)
+    {
+        String timeoutMillis = Long.toString(Math.max(1, timeout.toMillis()));
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", _host);
+        properties.put("mail.smtp.port", Integer.toString(_port));
+        properties.put("mail.smtp.auth", "true");
+        properties.put("mail.smtp.connectiontimeout", timeoutMillis);
+        properties.put("mail.smtp.timeout", timeoutMillis);
+        properties.put("mail.smtp.writetimeout", timeoutMillis);
+        switch (_security)
+        {
+            case SSL ->
+            {
+                properties.put("mail.smtp.socketFactory.port", Integer.toString(_port));
+                properties.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
+            }
+            case STARTTLS ->
+            {
+                properties.put("mail.smtp.starttls.enable", "true");
+                properties.put("mail.smtp.starttls.required", "true");
+            }
+            case NONE ->
+            {
+            }
+        }
+        return properties;
+    }
+
+    public String getHost()
+    {
+        return _host;
+    }
+
+    public int getPort()
+    {
+        return _port;
+    }
+
+    public Security getSecurity()
+    {
+        return _security;
+    }
+
+    @Override
+    public String toString()
+    {
+        return _security.getScheme() + _SCHEME_SEPARATOR + _host + ":" + _port;
+    }
+}
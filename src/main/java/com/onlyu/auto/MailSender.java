@@ -0,0 +1,338 @@
+package com.onlyu.auto;
+
+import jakarta.mail.*;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Year;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The send path of a run: session, connection, rendering into the outbox and draining it. Kept apart from
+ * {@link AutoUpdater} so the mail classes are only loaded and initialized by runs that actually have
+ * something to send, most runs end before that.
+ */
+public final class MailSender
+{
+    private static final Logger _LOGGER = LogManager.getLogger(MailSender.class);
+
+    private MailSender()
+    {
+    }
+
+    /**
+     * Queues the email of the given reports, unless the title is empty, and sends whatever is queued.
+     */
+    static void send(Profile profile, RunOptions options, ReportSession reportSession, TransportPool transportPool, Outbox outbox, String title, Map<String, Set<Integer>> toBeSentWeeks, List<File> toBeSentReports, Year currentYear, RunContext context) throws IOException, MessagingException, InterruptedException
+    {
+        RunMetrics metrics = context.getMetrics();
+        String senderArg = profile.getSender();
+        String passwordArg = profile.getPassword();
+        boolean noEmailMode = options.isNoEmailMode();
+        boolean dryRunMode = options.isDryRunMode();
+        MailEndpoint endpoint = options.getMailEndpoint();
+        Session session = newSession(endpoint, options.getRetryPolicy().getDeadline(), senderArg, passwordArg);
+        // Connect in the background while the message is being rendered and queued
+        _LOGGER.info("Checking mail server connectivity...");
+        CompletableFuture<Transport> connecting = connect(session, endpoint, transportPool, options.getRetryPolicy(), senderArg, passwordArg, metrics);
+        try
+        {
+            if (!title.isEmpty() || dryRunMode)
+            {
+                _LOGGER.info("Sending reports for {} now...", title);
+                String key = Outbox.keyOf(profile, toBeSentWeeks);
+                MimeMessage message = compose(session, key, profile, title, currentYear, reportSession, toBeSentReports, options.isSlimAttachments(), metrics);
+                // Nothing is queued when sending is disabled, otherwise the next real run would send it
+                if (!noEmailMode)
+                {
+                    outbox.enqueue(key, render(message), toBeSentWeeks);
+                    _LOGGER.info("Queued email {}", key);
+                }
+            }
+        }
+        catch (IOException | MessagingException | InterruptedException | RuntimeException e)
+        {
+            connecting.thenAccept(MailSender::closeQuietly);
+            throw e;
+        }
+        // Wait for the connection, the one that answered is then used for the actual send
+        Transport transport;
+        try
+        {
+            transport = connecting.get();
+            _LOGGER.info("Acquired connection to mail server. Confirmed that internet connectivity is active!");
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof TimeoutException)
+            {
+                _LOGGER.info("No internet connection, probably, nothing is going out at the moment. Queued emails will go out on the next run...");
+                return;
+            }
+            _LOGGER.warn("Exception occurred while checking for mail server connectivity");
+            if (e.getCause() instanceof MessagingException cause)
+                throw cause;
+            throw new MessagingException("Unable to connect to mail server", e);
+        }
+        // Are we allow to send it?
+        if (noEmailMode)
+        {
+            _LOGGER.info("Email sending feature is disabled! Nothing is going out!");
+            transportPool.release(senderArg, transport);
+            return;
+        }
+        try
+        {
+            drain(outbox, session, transport, reportSession, profile.getBaseDir(), metrics);
+        }
+        catch (IOException | MessagingException | InterruptedException | RuntimeException e)
+        {
+            closeQuietly(transport);
+            throw e;
+        }
+        transportPool.release(senderArg, transport);
+    }
+
+    /**
+     * Session of its own for every run, never the process-wide default one, so runs against different
+     * endpoints or accounts do not pick up each other's configuration.
+     */
+    static Session newSession(MailEndpoint endpoint, Duration timeout, String sender, String password)
+    {
+        // Mail props, no single network call may outlast the whole connect deadline
+        Properties properties = endpoint.toProperties(timeout);
+        // Core objects
+        return Session.getInstance(properties, new Authenticator()
+        {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication()
+            {
+                return new PasswordAuthentication(sender, password);
+            }
+        });
+    }
+
+    static MimeMessage compose(Session session, String key, Profile profile, String title, Year year, ReportSession reportSession, List<File> reports, boolean slimAttachments, RunMetrics metrics) throws IOException, MessagingException, InterruptedException
+    {
+        long start = metrics.start();
+        MimeMessage message = newMessage(session, key);
+        // Prepare message
+        message.setFrom(new InternetAddress(profile.getSender()));
+        message.addRecipient(Message.RecipientType.TO, new InternetAddress(profile.getRecipients()));
+        message.addRecipients(Message.RecipientType.CC, InternetAddress.parse(profile.getCcRecipients()));
+        message.setSubject(String.format(AutoUpdater._SUBJECT, profile.getProjectName(), title, year.getValue()));
+        // Body
+        BodyPart messageBodyPart = new MimeBodyPart();
+        messageBodyPart.setText(String.format(AutoUpdater._CONTENT, title, year.getValue()));
+        // Attachments
+        List<MimeBodyPart> attachmentParts = new ArrayList<>();
+        for (File report : reports)
+        {
+            // Taken from memory when the report has just been written, already base64 encoded when it went out before
+            ReportAttachment original = reportSession.attachment(report);
+            long optimizeStart = metrics.start();
+            ReportAttachment attachment = original.optimized(slimAttachments);
+            metrics.stop(RunMetrics._ATTACHMENT_OPTIMIZE, optimizeStart);
+            attachmentParts.add(attachment.toBodyPart());
+            metrics.increment(RunMetrics._ATTACHMENTS);
+            metrics.add(RunMetrics._ATTACHMENT_BYTES, attachment.getSize());
+            metrics.add(RunMetrics._ATTACHMENT_BYTES_SAVED, original.getSize() - attachment.getSize());
+        }
+        // Assemble
+        Multipart multipart = new MimeMultipart();
+        multipart.addBodyPart(messageBodyPart);
+        for (MimeBodyPart bodyPart : attachmentParts)
+            multipart.addBodyPart(bodyPart);
+        // Integrate
+        message.setContent(multipart);
+        metrics.stop(RunMetrics._MIME_BUILD, start);
+        return message;
+    }
+
+    /**
+     * Sends every queued email, oldest first. Weeks are only marked as sent, and the item only leaves the
+     * outbox, once the mail server accepted the message. An item the server turns down for good is set aside,
+     * one it turns down for now stays for the next run, either way the items behind it still go out. Only one
+     * run at a time drains an outbox, the items are read again once it is this run's turn as the previous one
+     * may have sent them already.
+     */
+    static void drain(Outbox outbox, Session session, Transport transport, ReportSession reportSession, Path baseDirPath, RunMetrics metrics) throws IOException, MessagingException, InterruptedException
+    {
+        try (LockFile lock = outbox.lock())
+        {
+            drainLocked(outbox, session, transport, reportSession, baseDirPath, metrics);
+        }
+    }
+
+    private static void drainLocked(Outbox outbox, Session session, Transport transport, ReportSession reportSession, Path baseDirPath, RunMetrics metrics) throws IOException, MessagingException, InterruptedException
+    {
+        for (Outbox.Item item : outbox.pending())
+        {
+            if (item.getAttempts() >= Outbox._MAX_ATTEMPTS)
+            {
+                outbox.fail(item, String.format("still not sent after %d attempts", item.getAttempts()));
+                continue;
+            }
+            long start;
+            try
+            {
+                if (alreadySent(item, reportSession, baseDirPath))
+                {
+                    // Crashed after marking but before cleaning up last time
+                    _LOGGER.info("Email {} has already been sent, dropping it from the outbox", item.getKey());
+                    outbox.remove(item);
+                    continue;
+                }
+                outbox.recordAttempt(item);
+                MimeMessage message = load(outbox, item, session);
+                // Send it!
+                _LOGGER.info("Sending email {} now...", item.getKey());
+                start = metrics.start();
+                transport.sendMessage(message, message.getAllRecipients());
+            }
+            catch (IOException | MessagingException e)
+            {
+                if (!RetryPolicy.isRetryable(e))
+                {
+                    outbox.fail(item, e.getMessage());
+                    continue;
+                }
+                // Without a connection the items behind it would fail the same way
+                if (!transport.isConnected())
+                    throw e;
+                _LOGGER.warn("Email {} could not be sent, it stays in the outbox for the next run: {}", item.getKey(), e.getMessage());
+                continue;
+            }
+            metrics.stop(RunMetrics._SEND, start);
+            metrics.increment(RunMetrics._EMAILS_SENT);
+            _LOGGER.info("Email sent!");
+            // Mark the week entries as sent!
+            _LOGGER.info("Marking week entries as sent...");
+            start = metrics.start();
+            for (Map.Entry<String, Set<Integer>> entry : item.getWeeks().entrySet())
+            {
+                File report = baseDirPath.resolve(entry.getKey()).toFile();
+                reportSession.handler(report).markAsSent(entry.getValue());
+                reportSession.save(report);
+            }
+            metrics.stop(RunMetrics._MARK_AS_SENT, start);
+            outbox.remove(item);
+            _LOGGER.info("Marked week entries as sent!");
+        }
+    }
+
+    static boolean alreadySent(Outbox.Item item, ReportSession reportSession, Path baseDirPath) throws IOException, InterruptedException
+    {
+        for (Map.Entry<String, Set<Integer>> entry : item.getWeeks().entrySet())
+        {
+            File report = baseDirPath.resolve(entry.getKey()).toFile();
+            if (!report.isFile())
+                throw new NoSuchFileException(report.getPath(), null, "report of a queued email is gone");
+            ReportSnapshot snapshot = reportSession.snapshot(report);
+            for (MonthSheet.Week week : snapshot.getWeeks())
+            {
+                if (entry.getValue().contains(week.getIndex()) && !week.hasBeenSent())
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A connected transport of the account, reused from the pool when possible, otherwise connected under the retry policy.
+     */
+    static CompletableFuture<Transport> connect(Session session, MailEndpoint endpoint, TransportPool transportPool, RetryPolicy retryPolicy, String sender, String password, RunMetrics metrics) throws NoSuchProviderException
+    {
+        long start = metrics.start();
+        Transport pooled = transportPool.acquire(sender);
+        if (pooled != null)
+        {
+            _LOGGER.info("Reusing an open connection to mail server {}", endpoint);
+            metrics.stop(RunMetrics._CONNECT, start);
+            return CompletableFuture.completedFuture(pooled);
+        }
+        Transport transport = session.getTransport();
+        CompletableFuture<Transport> connecting = retryPolicy.execute(String.format("Connecting to mail server %s", endpoint), () ->
+        {
+            metrics.increment(RunMetrics._CONNECT_ATTEMPTS);
+            transport.connect(sender, password);
+            if (!transport.isConnected())
+                throw new MessagingException("Mail server connection did not come up");
+            return transport;
+        });
+        connecting.whenComplete((connected, error) ->
+        {
+            metrics.stop(RunMetrics._CONNECT, start);
+            // An attempt may still be connecting when the deadline passes, closing waits for it to finish
+            if (error != null)
+                Thread.startVirtualThread(() -> closeQuietly(transport));
+        });
+        return connecting;
+    }
+
+    static void closeQuietly(Transport transport)
+    {
+        try
+        {
+            transport.close();
+        }
+        catch (MessagingException e)
+        {
+            _LOGGER.warn("Unable to close mail server connection cleanly: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Message whose Message-ID is derived from the idempotency key, so that a resend after a crash is
+     * recognizable as the same message on the receiving side.
+     */
+    static MimeMessage newMessage(Session session, String key) throws MessagingException
+    {
+        MimeMessage message = new MimeMessage(session)
+        {
+            @Override
+            protected void updateMessageID() throws MessagingException
+            {
+                setHeader("Message-ID", String.format("<%s@%s>", key, Outbox._MESSAGE_ID_DOMAIN));
+            }
+        };
+        message.setHeader(Outbox._IDEMPOTENCY_KEY_HEADER, key);
+        return message;
+    }
+
+    /**
+     * The message as it goes into the outbox, headers finalized.
+     */
+    static byte[] render(MimeMessage message) throws IOException, MessagingException
+    {
+        message.saveChanges();
+        ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+        message.writeTo(rendered);
+        return rendered.toByteArray();
+    }
+
+    /**
+     * The queued message exactly as rendered, it must be sent as is without saving changes again.
+     */
+    static MimeMessage load(Outbox outbox, Outbox.Item item, Session session) throws IOException, MessagingException
+    {
+        try (InputStream inputStream = outbox.openMessage(item))
+        {
+            return new MimeMessage(session, inputStream);
+        }
+    }
+}
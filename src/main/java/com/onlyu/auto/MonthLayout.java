@@ -0,0 +1,186 @@
+package com.onlyu.auto;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Week boundaries of a month and the sheet rows every week lives in. The layout of a month never changes,
+ * so it is computed once per process and shared by every report, profile and thread.
+ */
+public final class MonthLayout
+{
+    public static final int _FIRST_CONTENT_ROW = 6;
+    // Columns of the content row of a week
+    public static final int _PERIOD_COLUMN = 0;
+    public static final int _FROM_COLUMN = 1;
+    public static final int _TO_COLUMN = 2;
+    public static final int _BEGIN_AT_COLUMN = 3;
+    public static final int _END_AT_COLUMN = 4;
+    public static final int _TOTAL_TIME_COLUMN = 5;
+    public static final int _TASK_DESCRIPTION_COLUMN = 6;
+    public static final int _NOTE_COLUMN = 7;
+    // Columns of the conclude row of a week
+    public static final int _TOTAL_TIME_CALCULATED_COLUMN = 5;
+    public static final int _SENT_COLUMN = 6;
+
+    public static final class Week
+    {
+        private final int _index;
+        private final LocalDate _start;
+        private final LocalDate _end;
+        private final int _numberOfDays;
+
+        Week(int index, LocalDate start, LocalDate end)
+        {
+            _index = index;
+            _start = start;
+            _end = end;
+            _numberOfDays = (int)start.until(end.plusDays(1), ChronoUnit.DAYS);
+        }
+
+        public int getIndex()
+        {
+            return _index;
+        }
+
+        public int getPresentableIndex()
+        {
+            return _index + 1;
+        }
+
+        public LocalDate getStartOfWeek()
+        {
+            return _start;
+        }
+
+        public LocalDate getEndOfWeek()
+        {
+            return _end;
+        }
+
+        public int getNumberOfDays()
+        {
+            return _numberOfDays;
+        }
+
+        public int getContentRow()
+        {
+            return contentRowOf(_index);
+        }
+
+        public int getConcludeRow()
+        {
+            return concludeRowOf(_index);
+        }
+    }
+
+    private static final Map<YearMonth, MonthLayout> _LAYOUTS = new ConcurrentHashMap<>();
+
+    private final YearMonth _month;
+    private final List<Week> _weeks;
+
+    MonthLayout(YearMonth month)
+    {
+        _month = month;
+        LocalDate endOfMonth = month.atEndOfMonth();
+        List<Week> weeks = new ArrayList<>();
+        LocalDate from = month.atDay(1);
+        while (!firstWorkingDayFrom(from).isAfter(endOfMonth))
+        {
+            LocalDate start = firstWorkingDayFrom(from);
+            LocalDate end = lastWorkingDayFrom(from);
+            if (end.isAfter(endOfMonth))
+                end = endOfMonth;
+            weeks.add(new Week(weeks.size(), start, end));
+            from = end.plusDays(1);
+        }
+        _weeks = Collections.unmodifiableList(weeks);
+    }
+
+    public static MonthLayout of(YearMonth month)
+    {
+        return _LAYOUTS.computeIfAbsent(month, MonthLayout::new);
+    }
+
+    /**
+     * First working day of the week starting at the given date, weekends roll over to the next Monday.
+     */
+    static LocalDate firstWorkingDayFrom(LocalDate start)
+    {
+        switch (start.getDayOfWeek())
+        {
+            case SATURDAY:
+                return start.plusDays(2);
+            case SUNDAY:
+                return start.plusDays(1);
+            default:
+                return start;
+        }
+    }
+
+    /**
+     * Friday of the week starting at the given date, weekends roll over to the next week's Friday.
+     */
+    static LocalDate lastWorkingDayFrom(LocalDate start)
+    {
+        switch (start.getDayOfWeek())
+        {
+            case MONDAY:
+                return start.plusDays(4);
+            case TUESDAY:
+                return start.plusDays(3);
+            case WEDNESDAY:
+                return start.plusDays(2);
+            case THURSDAY:
+                return start.plusDays(1);
+            case FRIDAY:
+                return start.plusDays(0);
+            case SATURDAY:
+                return start.plusDays(6);
+            default:
+                return start.plusDays(5);
+        }
+    }
+
+    /**
+     * Row holding the period, hours, description and note of the week.
+     */
+    static int contentRowOf(int weekIndex)
+    {
+        return 2 * weekIndex + _FIRST_CONTENT_ROW;
+    }
+
+    /**
+     * Row holding the calculated total time and the sent marker of the week.
+     */
+    static int concludeRowOf(int weekIndex)
+    {
+        return 2 * weekIndex + _FIRST_CONTENT_ROW + 1;
+    }
+
+    public YearMonth getMonth()
+    {
+        return _month;
+    }
+
+    public LocalDate getStartOfMonth()
+    {
+        return _month.atDay(1);
+    }
+
+    public LocalDate getEndOfMonth()
+    {
+        return _month.atEndOfMonth();
+    }
+
+    public List<Week> getWeeks()
+    {
+        return _weeks;
+    }
+}
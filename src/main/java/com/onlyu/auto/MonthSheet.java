@@ -0,0 +1,342 @@
+package com.onlyu.auto;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Plain model of the weeks of a monthly timesheet, a few hundred bytes without any POI object behind it.
+ * Every decision about what to fill in, what to send and what has been sent is made here, the workbook is
+ * only touched to load it ({@link MonthSheetLoader}, {@link ReportScanner}) and to write it back
+ * ({@link MonthSheetWriter}). Changed weeks are remembered so that only they get written.
+ */
+public class MonthSheet
+{
+    public static final String _SENT = "SENT";
+    public static final Pattern _HOURS_PATTERN = Pattern.compile("^\\s*(\\d+(?:\\.\\d+)?)\\s*h");
+
+    public static final class Week
+    {
+        private final MonthLayout.Week _bounds;
+        private String _beginAt;
+        private String _endAt;
+        private String _totalTime;
+        private String _taskDescription;
+        private String _note;
+        private String _totalTimeCalculated;
+        private boolean _sent;
+        private boolean _dirty;
+
+        Week(MonthLayout.Week bounds, String beginAt, String endAt, String totalTime, String taskDescription, String note, String totalTimeCalculated, boolean sent)
+        {
+            _bounds = bounds;
+            _beginAt = beginAt;
+            _endAt = endAt;
+            _totalTime = totalTime;
+            _taskDescription = taskDescription;
+            _note = note;
+            _totalTimeCalculated = totalTimeCalculated;
+            _sent = sent;
+        }
+
+        Week(Week week)
+        {
+            this(week._bounds, week._beginAt, week._endAt, week._totalTime, week._taskDescription, week._note, week._totalTimeCalculated, week._sent);
+            _dirty = week._dirty;
+        }
+
+        /**
+         * Takes the content over, the week only counts as changed when some of it differs.
+         */
+        public Week fill(WeekContent content)
+        {
+            String[] before = { _beginAt, _endAt, _totalTime, _taskDescription, _note, _totalTimeCalculated };
+            _beginAt = content.getBeginAt();
+            _endAt = content.getEndAt();
+            _totalTime = content.getTotalTime();
+            _taskDescription = content.getTaskDescription();
+            _note = content.getNote();
+            _totalTimeCalculated = content.getTotalTimeCalculated();
+            String[] after = { _beginAt, _endAt, _totalTime, _taskDescription, _note, _totalTimeCalculated };
+            if (!Arrays.equals(before, after))
+                _dirty = true;
+            return this;
+        }
+
+        public Week markAsSent()
+        {
+            if (!_sent)
+                _dirty = true;
+            _sent = true;
+            return this;
+        }
+
+        public MonthLayout.Week getBounds()
+        {
+            return _bounds;
+        }
+
+        public int getIndex()
+        {
+            return _bounds.getIndex();
+        }
+
+        public int getPresentableIndex()
+        {
+            return _bounds.getPresentableIndex();
+        }
+
+        public LocalDate getStartOfWeek()
+        {
+            return _bounds.getStartOfWeek();
+        }
+
+        public LocalDate getEndOfWeek()
+        {
+            return _bounds.getEndOfWeek();
+        }
+
+        public int getNumberOfDays()
+        {
+            return _bounds.getNumberOfDays();
+        }
+
+        public String getBeginAt()
+        {
+            return _beginAt;
+        }
+
+        public String getEndAt()
+        {
+            return _endAt;
+        }
+
+        public String getTotalTime()
+        {
+            return _totalTime;
+        }
+
+        public String getTaskDescription()
+        {
+            return _taskDescription;
+        }
+
+        public String getNote()
+        {
+            return _note;
+        }
+
+        public String getTotalTimeCalculated()
+        {
+            return _totalTimeCalculated;
+        }
+
+        /**
+         * Hours of the calculated total time, {@code 0} when there is none or it is not a number of hours.
+         */
+        public double getHours()
+        {
+            Matcher matcher = _HOURS_PATTERN.matcher(_totalTimeCalculated);
+            return matcher.find() ? Double.parseDouble(matcher.group(1)) : 0;
+        }
+
+        public boolean hasContent()
+        {
+            return !_totalTimeCalculated.isBlank();
+        }
+
+        public boolean hasBeenSent()
+        {
+            return _sent;
+        }
+
+        public boolean isDirty()
+        {
+            return _dirty;
+        }
+
+        public boolean isCurrent(LocalDate today)
+        {
+            return !today.isBefore(getStartOfWeek()) && !today.isAfter(getEndOfWeek());
+        }
+
+        public boolean isPast(LocalDate today)
+        {
+            return today.isAfter(getEndOfWeek());
+        }
+
+        public boolean isFuture(LocalDate today)
+        {
+            return today.isBefore(getStartOfWeek());
+        }
+    }
+
+    private final MonthLayout _layout;
+    private final List<Week> _weeks;
+
+    MonthSheet(MonthLayout layout, List<Week> weeks)
+    {
+        _layout = layout;
+        _weeks = Collections.unmodifiableList(weeks);
+    }
+
+    /**
+     * Month without any content, as in a report fresh from the template.
+     */
+    public static MonthSheet of(YearMonth month)
+    {
+        MonthLayout layout = MonthLayout.of(month);
+        List<Week> weeks = new ArrayList<>();
+        for (MonthLayout.Week bounds : layout.getWeeks())
+            weeks.add(new Week(bounds, "", "", "", "", "", "", false));
+        return new MonthSheet(layout, weeks);
+    }
+
+    /**
+     * Month as read from somewhere, one week per week of the layout, in order.
+     */
+    public static MonthSheet of(MonthLayout layout, List<Week> weeks)
+    {
+        if (weeks.size() != layout.getWeeks().size())
+            throw new IllegalArgumentException(String.format("%s has %d weeks, got %d", layout.getMonth(), layout.getWeeks().size(), weeks.size()));
+        return new MonthSheet(layout, new ArrayList<>(weeks));
+    }
+
+    public static Week week(MonthLayout.Week bounds, String beginAt, String endAt, String totalTime, String taskDescription, String note, String totalTimeCalculated, boolean sent)
+    {
+        return new Week(bounds, nonNull(beginAt), nonNull(endAt), nonNull(totalTime), nonNull(taskDescription), nonNull(note), nonNull(totalTimeCalculated), sent);
+    }
+
+    private static String nonNull(String value)
+    {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Independent copy, changes to either one do not show in the other.
+     */
+    public MonthSheet copy()
+    {
+        List<Week> weeks = new ArrayList<>(_weeks.size());
+        for (Week week : _weeks)
+            weeks.add(new Week(week));
+        return new MonthSheet(_layout, weeks);
+    }
+
+    /**
+     * Fills the past weeks that have no content yet, latest first, stopping at the first week that has some.
+     * Weeks the provider has nothing for stay blank, so they are neither sealed nor sent.
+     */
+    public MonthSheet updateContent(LocalDate today, ContentProvider contentProvider) throws IOException
+    {
+        for (int i = _weeks.size() - 1; i >= 0; i--)
+        {
+            Week week = _weeks.get(i);
+            if (week.hasContent())
+                break;
+            if (week.isFuture(today) || week.isCurrent(today))
+                continue;
+            WeekContent content = contentProvider.contentOf(week.getBounds());
+            if (content != null)
+                week.fill(content);
+        }
+        return this;
+    }
+
+    /**
+     * Tells whether {@link #updateContent} would fill any week, blank weeks the provider has nothing for do not
+     * count, so a week without logged work does not get the workbook loaded on every run.
+     */
+    public boolean needsContentUpdate(LocalDate today, ContentProvider contentProvider) throws IOException
+    {
+        for (int i = _weeks.size() - 1; i >= 0; i--)
+        {
+            Week week = _weeks.get(i);
+            if (week.hasContent())
+                break;
+            if (week.isFuture(today) || week.isCurrent(today))
+                continue;
+            if (contentProvider.contentOf(week.getBounds()) != null)
+                return true;
+        }
+        return false;
+    }
+
+    public MonthSheet markAllAsSent(LocalDate today)
+    {
+        for (int i = _weeks.size() - 1; i >= 0; i--)
+        {
+            Week week = _weeks.get(i);
+            if (week.hasBeenSent())
+                break;
+            if (week.isCurrent(today) || week.isFuture(today))
+                continue;
+            week.markAsSent();
+        }
+        return this;
+    }
+
+    public MonthSheet markAsSent(Collection<Integer> weekIndexes)
+    {
+        for (Week week : _weeks)
+        {
+            if (weekIndexes.contains(week.getIndex()))
+                week.markAsSent();
+        }
+        return this;
+    }
+
+    public List<Week> getUnsentWeeks(LocalDate today)
+    {
+        List<Week> unsent = new ArrayList<>();
+        for (Week week : _weeks)
+        {
+            if (week.isPast(today) && week.hasContent() && !week.hasBeenSent())
+                unsent.add(week);
+        }
+        return unsent;
+    }
+
+    public boolean hasUnsentContent(LocalDate today)
+    {
+        return !getUnsentWeeks(today).isEmpty();
+    }
+
+    public boolean isDirty()
+    {
+        for (Week week : _weeks)
+        {
+            if (week.isDirty())
+                return true;
+        }
+        return false;
+    }
+
+    void markClean()
+    {
+        for (Week week : _weeks)
+            week._dirty = false;
+    }
+
+    public YearMonth getMonth()
+    {
+        return _layout.getMonth();
+    }
+
+    public MonthLayout getLayout()
+    {
+        return _layout;
+    }
+
+    public List<Week> getWeeks()
+    {
+        return _weeks;
+    }
+}
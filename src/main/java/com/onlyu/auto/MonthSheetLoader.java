@@ -0,0 +1,54 @@
+package com.onlyu.auto;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the {@link MonthSheet} out of the first sheet of a loaded workbook. Cells are read as they are
+ * displayed, the same way {@link ReportScanner} sees them, so both loaders agree on every report.
+ */
+public final class MonthSheetLoader
+{
+    private static final DataFormatter _FORMATTER = new DataFormatter();
+
+    private MonthSheetLoader()
+    {
+    }
+
+    public static MonthSheet load(Sheet sheet, YearMonth month)
+    {
+        MonthLayout layout = MonthLayout.of(month);
+        List<MonthSheet.Week> weeks = new ArrayList<>();
+        for (MonthLayout.Week bounds : layout.getWeeks())
+        {
+            Row contentRow = sheet.getRow(bounds.getContentRow());
+            Row concludeRow = sheet.getRow(bounds.getConcludeRow());
+            weeks.add(MonthSheet.week
+            (
+                bounds,
+                text(contentRow, MonthLayout._BEGIN_AT_COLUMN),
+                text(contentRow, MonthLayout._END_AT_COLUMN),
+                text(contentRow, MonthLayout._TOTAL_TIME_COLUMN),
+                text(contentRow, MonthLayout._TASK_DESCRIPTION_COLUMN),
+                text(contentRow, MonthLayout._NOTE_COLUMN),
+                text(concludeRow, MonthLayout._TOTAL_TIME_CALCULATED_COLUMN),
+                !text(concludeRow, MonthLayout._SENT_COLUMN).isBlank()
+            ));
+        }
+        return MonthSheet.of(layout, weeks);
+    }
+
+    private static String text(Row row, int column)
+    {
+        if (row == null)
+            return "";
+        Cell cell = row.getCell(column);
+        return cell == null ? "" : _FORMATTER.formatCellValue(cell);
+    }
+}
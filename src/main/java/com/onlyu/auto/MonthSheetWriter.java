@@ -0,0 +1,79 @@
+package com.onlyu.auto;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a {@link MonthSheet} into the first sheet of a loaded workbook. Only the weeks that changed since
+ * the model was loaded are written, and a cell only when its value actually differs.
+ */
+public final class MonthSheetWriter
+{
+    private MonthSheetWriter()
+    {
+    }
+
+    /**
+     * Period, first and last day of every week, which only depend on the month.
+     */
+    public static boolean writePeriods(MonthSheet monthSheet, Sheet sheet)
+    {
+        boolean changed = false;
+        for (MonthSheet.Week week : monthSheet.getWeeks())
+        {
+            Row contentRow = row(sheet, week.getBounds().getContentRow());
+            changed |= set(contentRow, MonthLayout._PERIOD_COLUMN, String.format("Week %s", week.getPresentableIndex()));
+            changed |= set(contentRow, MonthLayout._FROM_COLUMN, week.getStartOfWeek().format(ReportHandler._DATE_TIME_FORMATTER));
+            changed |= set(contentRow, MonthLayout._TO_COLUMN, week.getEndOfWeek().format(ReportHandler._DATE_TIME_FORMATTER));
+        }
+        return changed;
+    }
+
+    /**
+     * Content and sent marker of the changed weeks. Returns the cells that have actually been changed.
+     */
+    public static List<Cell> write(MonthSheet monthSheet, Sheet sheet)
+    {
+        List<Cell> changed = new ArrayList<>();
+        for (MonthSheet.Week week : monthSheet.getWeeks())
+        {
+            if (!week.isDirty())
+                continue;
+            Row contentRow = row(sheet, week.getBounds().getContentRow());
+            Row concludeRow = row(sheet, week.getBounds().getConcludeRow());
+            set(contentRow, MonthLayout._BEGIN_AT_COLUMN, week.getBeginAt(), changed);
+            set(contentRow, MonthLayout._END_AT_COLUMN, week.getEndAt(), changed);
+            set(contentRow, MonthLayout._TOTAL_TIME_COLUMN, week.getTotalTime(), changed);
+            set(contentRow, MonthLayout._TASK_DESCRIPTION_COLUMN, week.getTaskDescription(), changed);
+            set(contentRow, MonthLayout._NOTE_COLUMN, week.getNote(), changed);
+            set(concludeRow, MonthLayout._TOTAL_TIME_CALCULATED_COLUMN, week.getTotalTimeCalculated(), changed);
+            // Sent is never taken back, a marker someone typed in by hand stays as it is
+            if (week.hasBeenSent() && concludeRow.getCell(MonthLayout._SENT_COLUMN, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).toString().isBlank())
+                set(concludeRow, MonthLayout._SENT_COLUMN, MonthSheet._SENT, changed);
+        }
+        return changed;
+    }
+
+    private static Row row(Sheet sheet, int index)
+    {
+        Row row = sheet.getRow(index);
+        return row == null ? sheet.createRow(index) : row;
+    }
+
+    private static boolean set(Row row, int column, String value)
+    {
+        Cell cell = row.getCell(column, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+        return ReportHandler.setCellValue(cell, value);
+    }
+
+    private static void set(Row row, int column, String value, List<Cell> changed)
+    {
+        Cell cell = row.getCell(column, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+        if (ReportHandler.setCellValue(cell, value))
+            changed.add(cell);
+    }
+}
@@ -0,0 +1,323 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Disk-backed queue of rendered timesheet emails in {@code <base dir>/.outbox/<profile id>}, one per profile
+ * so that profiles sharing a base directory never send, or hold back, each other's emails. Every item is the MIME
+ * message ({@code <key>.eml}) plus the week entries it covers ({@code <key>.properties}, written last so it
+ * doubles as the commit marker). Items are only removed once the send went through and the weeks have been
+ * marked as sent, so a crash at any point leads to a resend of the same message, never to a lost one. Items
+ * that cannot be sent at all, or not within {@link #_MAX_ATTEMPTS} runs, are set aside in {@code failed} so
+ * they do not hold up the ones behind them. Their weeks are left alone, neither sent nor queued again, until
+ * someone deals with the item: deleting it gets the weeks queued afresh on the next run.
+ */
+public class Outbox
+{
+    private static final Logger _LOGGER = LogManager.getLogger(Outbox.class);
+
+    public static final String _OUTBOX_DIR_NAME = ".outbox";
+    public static final String _FAILED_DIR_NAME = "failed";
+    public static final int _MAX_ATTEMPTS = 10;
+    public static final String _MESSAGE_FILE_EXTENSION = ".eml";
+    public static final String _ITEM_FILE_EXTENSION = ".properties";
+    public static final String _MESSAGE_ID_DOMAIN = "auto-timesheet-sender";
+    public static final String _IDEMPOTENCY_KEY_HEADER = "X-Timesheet-Idempotency-Key";
+    public static final String _ATTEMPTS_PROPERTY = "attempts";
+    public static final String _CREATED_PROPERTY = "created";
+    public static final String _WEEKS_PROPERTY_PREFIX = "weeks.";
+
+    public static class Item
+    {
+        private final String _key;
+        private final Map<String, Set<Integer>> _weeks;
+        private final int _attempts;
+
+        Item(String key, Map<String, Set<Integer>> weeks, int attempts)
+        {
+            _key = key;
+            _weeks = weeks;
+            _attempts = attempts;
+        }
+
+        public String getKey()
+        {
+            return _key;
+        }
+
+        /**
+         * Week indexes covered by the message, per report file name.
+         */
+        public Map<String, Set<Integer>> getWeeks()
+        {
+            return _weeks;
+        }
+
+        public int getAttempts()
+        {
+            return _attempts;
+        }
+    }
+
+    private final Path _dir;
+
+    Outbox(Path dir)
+    {
+        _dir = dir;
+    }
+
+    public static Outbox of(Path baseDir, Profile profile)
+    {
+        return new Outbox(baseDir.resolve(_OUTBOX_DIR_NAME).resolve(idOf(profile)));
+    }
+
+    /**
+     * File name friendly id of a profile: its sender, plus a hash of who gets its emails and for which project.
+     */
+    public static String idOf(Profile profile)
+    {
+        String sender = profile.getSender().replaceAll("[^A-Za-z0-9_.@-]", "_").toLowerCase(Locale.ROOT);
+        return sender + "-" + digest(identityOf(profile).toString(), 4);
+    }
+
+    /**
+     * Stable key of a message: the same people getting the same weeks always end up with the same key.
+     */
+    public static String keyOf(Profile profile, Map<String, Set<Integer>> weeks)
+    {
+        StringBuilder sb = identityOf(profile);
+        for (Map.Entry<String, Set<Integer>> entry : new TreeMap<>(weeks).entrySet())
+            sb.append(entry.getKey()).append(':').append(new TreeSet<>(entry.getValue())).append('\n');
+        return digest(sb.toString(), 16);
+    }
+
+    /**
+     * Whether the key is queued, or has been set aside.
+     */
+    public boolean contains(String key)
+    {
+        return Files.exists(_dir.resolve(key + _ITEM_FILE_EXTENSION)) || Files.exists(_dir.resolve(_FAILED_DIR_NAME).resolve(key + _ITEM_FILE_EXTENSION));
+    }
+
+    /**
+     * Writes the rendered message to disk and records the weeks it covers. Does nothing if the key is already
+     * queued or has been set aside.
+     */
+    public void enqueue(String key, byte[] message, Map<String, Set<Integer>> weeks) throws IOException
+    {
+        if (contains(key))
+            return;
+        Files.createDirectories(_dir);
+        DurableFiles.write(_dir.resolve(key + _MESSAGE_FILE_EXTENSION), message);
+        Properties properties = new Properties();
+        properties.setProperty(_ATTEMPTS_PROPERTY, "0");
+        properties.setProperty(_CREATED_PROPERTY, Long.toString(System.currentTimeMillis()));
+        for (Map.Entry<String, Set<Integer>> entry : weeks.entrySet())
+            properties.setProperty(_WEEKS_PROPERTY_PREFIX + entry.getKey(), join(entry.getValue()));
+        writeItem(key, properties);
+    }
+
+    /**
+     * Exclusive right to send from this outbox, so that overlapping runs never send the same email twice.
+     */
+    public LockFile lock() throws IOException, InterruptedException
+    {
+        Files.createDirectories(_dir);
+        return LockFile.acquire(_dir.resolve(LockFile._LOCK_FILE_EXTENSION), LockFile._DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Queued items, oldest first. Items that cannot be read are set aside.
+     */
+    public List<Item> pending() throws IOException
+    {
+        return readItems(_dir, true);
+    }
+
+    /**
+     * Items that have been set aside, oldest first.
+     */
+    public List<Item> failed() throws IOException
+    {
+        return readItems(_dir.resolve(_FAILED_DIR_NAME), false);
+    }
+
+    /**
+     * Weeks that are already queued or set aside, per report file name, so they do not get queued a second time.
+     */
+    public Map<String, Set<Integer>> pendingWeeks() throws IOException
+    {
+        Map<String, Set<Integer>> weeks = new HashMap<>();
+        List<Item> failed = failed();
+        if (!failed.isEmpty())
+            _LOGGER.warn("{} email(s) in [{}] could not be sent, their weeks are held back until they are dealt with", Unbox.box(failed.size()), _dir.resolve(_FAILED_DIR_NAME));
+        List<Item> items = new ArrayList<>(pending());
+        items.addAll(failed);
+        for (Item item : items)
+        {
+            for (Map.Entry<String, Set<Integer>> entry : item.getWeeks().entrySet())
+                weeks.computeIfAbsent(entry.getKey(), key -> new TreeSet<>()).addAll(entry.getValue());
+        }
+        return weeks;
+    }
+
+    /**
+     * The queued message exactly as rendered.
+     */
+    public InputStream openMessage(Item item) throws IOException
+    {
+        return Files.newInputStream(_dir.resolve(item.getKey() + _MESSAGE_FILE_EXTENSION));
+    }
+
+    public void recordAttempt(Item item) throws IOException
+    {
+        Properties properties = readItem(_dir.resolve(item.getKey() + _ITEM_FILE_EXTENSION));
+        properties.setProperty(_ATTEMPTS_PROPERTY, Integer.toString(item.getAttempts() + 1));
+        writeItem(item.getKey(), properties);
+    }
+
+    /**
+     * Moves an item that will never go out to {@code failed}, where it waits to be looked at.
+     */
+    public void fail(Item item, String reason) throws IOException
+    {
+        setAside(item.getKey(), reason);
+    }
+
+    public void remove(Item item) throws IOException
+    {
+        Files.deleteIfExists(_dir.resolve(item.getKey() + _ITEM_FILE_EXTENSION));
+        Files.deleteIfExists(_dir.resolve(item.getKey() + _MESSAGE_FILE_EXTENSION));
+    }
+
+    private void setAside(String key, String reason) throws IOException
+    {
+        Path failedDir = Files.createDirectories(_dir.resolve(_FAILED_DIR_NAME));
+        // The item file first, without it the message left behind is never picked up again
+        for (String extension : List.of(_ITEM_FILE_EXTENSION, _MESSAGE_FILE_EXTENSION))
+        {
+            Path file = _dir.resolve(key + extension);
+            if (Files.exists(file))
+                Files.move(file, failedDir.resolve(key + extension), StandardCopyOption.REPLACE_EXISTING);
+        }
+        _LOGGER.warn("Email {} will not be sent, moved it to [{}]: {}", key, failedDir, reason);
+    }
+
+    private static StringBuilder identityOf(Profile profile)
+    {
+        return new StringBuilder()
+            .append(profile.getSender()).append('\n')
+            .append(profile.getRecipients()).append('\n')
+            .append(profile.getCcRecipients()).append('\n')
+            .append(profile.getProjectName()).append('\n');
+    }
+
+    private static String digest(String value, int length)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, length);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Item> readItems(Path dir, boolean setAsideUnreadable) throws IOException
+    {
+        if (!Files.isDirectory(dir))
+            return List.of();
+        TreeMap<String, Item> items = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + _ITEM_FILE_EXTENSION))
+        {
+            for (Path itemFile : stream)
+            {
+                String fileName = itemFile.getFileName().toString();
+                String key = fileName.substring(0, fileName.length() - _ITEM_FILE_EXTENSION.length());
+                try
+                {
+                    Properties properties = readItem(itemFile);
+                    Map<String, Set<Integer>> weeks = new HashMap<>();
+                    for (String name : properties.stringPropertyNames())
+                    {
+                        if (name.startsWith(_WEEKS_PROPERTY_PREFIX))
+                            weeks.put(name.substring(_WEEKS_PROPERTY_PREFIX.length()), split(properties.getProperty(name)));
+                    }
+                    int attempts = Integer.parseInt(properties.getProperty(_ATTEMPTS_PROPERTY, "0"));
+                    long created = Long.parseLong(properties.getProperty(_CREATED_PROPERTY, "0"));
+                    items.put(String.format("%020d-%s", created, key), new Item(key, weeks, attempts));
+                }
+                catch (IOException | IllegalArgumentException e)
+                {
+                    if (setAsideUnreadable)
+                        setAside(key, "unreadable item: " + e.getMessage());
+                    else
+                        _LOGGER.warn("Ignoring unreadable item {} in [{}]: {}", key, dir, e.getMessage());
+                }
+            }
+        }
+        return new ArrayList<>(items.values());
+    }
+
+    private Properties readItem(Path itemFile) throws IOException
+    {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(itemFile))
+        {
+            properties.load(inputStream);
+        }
+        return properties;
+    }
+
+    private void writeItem(String key, Properties properties) throws IOException
+    {
+        DurableFiles.write(_dir.resolve(key + _ITEM_FILE_EXTENSION), outputStream -> properties.store(outputStream, "Queued timesheet email"));
+    }
+
+    private static String join(Set<Integer> weeks)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Integer week : new TreeSet<>(weeks))
+        {
+            if (!sb.isEmpty())
+                sb.append(',');
+            sb.append(week);
+        }
+        return sb.toString();
+    }
+
+    private static Set<Integer> split(String weeks)
+    {
+        Set<Integer> result = new TreeSet<>();
+        for (String week : weeks.split(","))
+        {
+            if (!week.isBlank())
+                result.add(Integer.parseInt(week.strip()));
+        }
+        return result;
+    }
+}
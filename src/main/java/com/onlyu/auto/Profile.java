@@ -0,0 +1,84 @@
+package com.onlyu.auto;
+
+import java.nio.file.Path;
+
+public class Profile
+{
+    public static final String _MANIFEST_FIELD_SEPARATOR = "|";
+    public static final String _MANIFEST_COMMENT_PREFIX = "#";
+    public static final int _MANIFEST_FIELD_COUNT = 6;
+
+    private final Path _baseDir;
+    private final String _sender;
+    private final String _password;
+    private final String _recipients;
+    private final String _ccRecipients;
+    private final String _projectName;
+
+    Profile(Path baseDir, String sender, String password, String recipients, String ccRecipients, String projectName)
+    {
+        _baseDir = baseDir;
+        _sender = sender;
+        _password = password;
+        _recipients = recipients;
+        _ccRecipients = ccRecipients;
+        _projectName = projectName;
+    }
+
+    public static Profile of(Path baseDir, String sender, String password, String recipients, String ccRecipients, String projectName)
+    {
+        return new Profile(baseDir, sender, password, recipients, ccRecipients, projectName);
+    }
+
+    /**
+     * Parses a single manifest line of the form
+     * {@code <base directory>|<sender>|<password>|<recipients>|<cc>|<project>}.
+     * Returns {@code null} for blank lines and comments.
+     */
+    public static Profile parse(String line)
+    {
+        String trimmed = line.strip();
+        if (trimmed.isEmpty() || trimmed.startsWith(_MANIFEST_COMMENT_PREFIX))
+            return null;
+        String[] fields = trimmed.split("\\" + _MANIFEST_FIELD_SEPARATOR, -1);
+        if (fields.length != _MANIFEST_FIELD_COUNT)
+            throw new IllegalArgumentException(String.format("Expected %d fields in manifest line but got %d: [%s]", _MANIFEST_FIELD_COUNT, fields.length, trimmed));
+        return of(Path.of(fields[0].strip()), fields[1].strip(), fields[2].strip(), fields[3].strip(), fields[4].strip(), fields[5].strip());
+    }
+
+    public Path getBaseDir()
+    {
+        return _baseDir;
+    }
+
+    public String getSender()
+    {
+        return _sender;
+    }
+
+    public String getPassword()
+    {
+        return _password;
+    }
+
+    public String getRecipients()
+    {
+        return _recipients;
+    }
+
+    public String getCcRecipients()
+    {
+        return _ccRecipients;
+    }
+
+    public String getProjectName()
+    {
+        return _projectName;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s (%s)", _projectName, _baseDir);
+    }
+}
@@ -0,0 +1,36 @@
+package com.onlyu.auto;
+
+import java.util.Random;
+
+/**
+ * The original filler, a fixed 25 hour evening schedule with one of a few canned descriptions.
+ */
+public class RandomContentProvider implements ContentProvider
+{
+    public static final Random _RANDOM_INSTANCE = new Random();
+    public static final String[][] _RANDOM_CONTENTS = new String[][]
+    {
+        { "Framework/Tool development, building first URI/API mapping feature, Reverse Proxy Interfaces and implementations.", "Core technology for all upcoming applications" },
+        { "More core features development for incoming framework/tool. Designing, implementing and deploying initial landing page and other sections.", "User interfaces" },
+        { "Tech stacks researching for feature developments and implementations.", "Research & ad hoc" },
+        { "Designing and setting up infrastructure. Considering minimal amount of budget spent on resources", "Research & ad hoc" },
+    };
+
+    private static final RandomContentProvider _INSTANCE = new RandomContentProvider();
+
+    RandomContentProvider()
+    {
+    }
+
+    public static RandomContentProvider of()
+    {
+        return _INSTANCE;
+    }
+
+    @Override
+    public WeekContent contentOf(MonthLayout.Week week)
+    {
+        int randomInt = _RANDOM_INSTANCE.nextInt(_RANDOM_CONTENTS.length);
+        return WeekContent.of("18:00", "23:00", "5h/day = 25h/week", _RANDOM_CONTENTS[randomInt][0], _RANDOM_CONTENTS[randomInt][1], "25h");
+    }
+}
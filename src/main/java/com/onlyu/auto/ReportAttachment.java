@@ -0,0 +1,135 @@
+package com.onlyu.auto;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Base64;
+
+/**
+ * Report content ready to be attached, either the bytes that were just written or the file on disk read in
+ * one go, so the report is never read back through a stream. The base64 form is computed once and reused
+ * for every message the report goes into.
+ */
+public class ReportAttachment
+{
+    public static final String _CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    public static final String _TRANSFER_ENCODING = "base64";
+
+    private final String _name;
+    private final ByteBuffer _content;
+    private volatile byte[] _encoded;
+    private volatile ReportAttachment _optimized;
+    private volatile ReportAttachment _slim;
+
+    ReportAttachment(String name, ByteBuffer content)
+    {
+        _name = name;
+        _content = content;
+    }
+
+    public static ReportAttachment of(String name, byte[] content)
+    {
+        return new ReportAttachment(name, ByteBuffer.wrap(content).asReadOnlyBuffer());
+    }
+
+    /**
+     * Attachment read from the file in one go. Not a mapping: the session may replace the file while the
+     * attachment is still around, and Windows refuses to replace a file that is mapped.
+     */
+    public static ReportAttachment read(File file) throws IOException
+    {
+        return of(file.getName(), Files.readAllBytes(file.toPath()));
+    }
+
+    public String getName()
+    {
+        return _name;
+    }
+
+    public int getSize()
+    {
+        return _content.remaining();
+    }
+
+    /**
+     * Recompressed copy for sending, slimmed down as well if asked to, see {@link AttachmentOptimizer}.
+     */
+    public ReportAttachment optimized(boolean slim)
+    {
+        ReportAttachment optimized = slim ? _slim : _optimized;
+        if (optimized == null)
+        {
+            byte[] bytes = AttachmentOptimizer.optimize(_content, slim);
+            optimized = bytes.length < getSize() ? of(_name, bytes) : this;
+            if (slim)
+                _slim = optimized;
+            else
+                _optimized = optimized;
+        }
+        return optimized;
+    }
+
+    /**
+     * MIME base64 of the content, 76 characters per line.
+     */
+    public byte[] getEncoded()
+    {
+        byte[] encoded = _encoded;
+        if (encoded == null)
+        {
+            ByteBuffer buffer = Base64.getMimeEncoder().encode(_content.duplicate());
+            encoded = new byte[buffer.remaining()];
+            buffer.get(encoded);
+            _encoded = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * Body part that writes the cached base64 as is instead of encoding the content again.
+     */
+    public MimeBodyPart toBodyPart() throws MessagingException
+    {
+        MimeBodyPart part = new PreencodedMimeBodyPart(_TRANSFER_ENCODING);
+        part.setDataHandler(new DataHandler(new DataSource()
+        {
+            @Override
+            public InputStream getInputStream()
+            {
+                return new ByteArrayInputStream(getEncoded());
+            }
+
+            @Override
+            public OutputStream getOutputStream() throws IOException
+            {
+                throw new IOException("Report attachments are read-only");
+            }
+
+            @Override
+            public String getContentType()
+            {
+                return _CONTENT_TYPE;
+            }
+
+            @Override
+            public String getName()
+            {
+                return _name;
+            }
+        }));
+        part.setFileName(_name);
+        part.setDisposition(Part.ATTACHMENT);
+        return part;
+    }
+}
@@ -1,90 +1,93 @@
 package com.onlyu.auto;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.*;
-import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.Year;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.Locale;
-import java.util.Random;
 
 public class ReportHandler implements Closeable
 {
+    private static final Logger _LOGGER = LogManager.getLogger(ReportHandler.class);
+
     public static final String _FINAL_OUTPUT_FILE_EXTENSION = "xlsx";
     public static final String _TEMPLATE_FILE_NAME = "template." + _FINAL_OUTPUT_FILE_EXTENSION;
     public static final String _REPORT_FILE_NAME_FORMAT = "TotalTimeSheet-%02d-%s-%d." + _FINAL_OUTPUT_FILE_EXTENSION;
-    public static final String _TEMP_REPORT_FILE_NAME_FORMAT = "TotalTimeSheet-%02d-%s-%d-temp." + _FINAL_OUTPUT_FILE_EXTENSION;
     public static final String _DATE_PATTERN = "dd/MM/yyyy";
     public static final DateTimeFormatter _DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(_DATE_PATTERN);
 
-    public static final Random _RANDOM_INSTANCE = new Random();
-    public static final String[][] _RANDOM_CONTENTS = new String[][]
-    {
-        { "Framework/Tool development, building first URI/API mapping feature, Reverse Proxy Interfaces and implementations.", "Core technology for all upcoming applications" },
-        { "More core features development for incoming framework/tool. Designing, implementing and deploying initial landing page and other sections.", "User interfaces" },
-        { "Tech stacks researching for feature developments and implementations.", "Research & ad hoc" },
-        { "Designing and setting up infrastructure. Considering minimal amount of budget spent on resources", "Research & ad hoc" },
-    };
-
     private final File _file;
-    private final File _tempFile;
     private final Path _outputFilePath;
-    private final Path _outputTempFilePath;
     private final OPCPackage _package;
-    private final Workbook _workbook;
+    private final XSSFWorkbook _workbook;
     private final Month _month;
     private final Year _year;
     private final LocalDate _startOfMonth;
     private final LocalDate _endOfMonth;
-    private final List<WeekEntry> weekEntries;
+    private final MonthSheet _monthSheet;
+    private boolean _dirty;
+    private byte[] _writtenBytes;
+    private byte[] _sourceBytes;
 
     ReportHandler(File file, Path baseDir) throws IOException, InvalidFormatException
     {
-        LocalDate now = LocalDate.now();
         _file = file;
         _outputFilePath = _file.toPath();
         if (!file.exists())
         {
-            ClassLoader classloader = Thread.currentThread().getContextClassLoader();
-            InputStream inputStream = classloader.getResourceAsStream(_TEMPLATE_FILE_NAME);
-            if (inputStream == null)
-                inputStream = new FileInputStream(new File(Path.of(baseDir.toString(), _TEMPLATE_FILE_NAME).toUri()));
-            _package = OPCPackage.open(inputStream);
+            // Only the read is saved by the cache, the template is parsed anew for every report
+            try (InputStream inputStream = TemplateCache.open(baseDir))
+            {
+                _package = OPCPackage.open(inputStream);
+            }
             _workbook = new XSSFWorkbook(_package);
+            _dirty = true; // Nothing on disk yet
         }
         else
         {
-            _package = OPCPackage.open(_file);
+            // Opened from memory on purpose, a package opened from a file would be written back on close,
+            // and the bytes are kept as the base that small changes are patched into
+            _sourceBytes = Files.readAllBytes(_outputFilePath);
+            _package = OPCPackage.open(new ByteArrayInputStream(_sourceBytes));
             _workbook = new XSSFWorkbook(_package);
         }
-        String reportNameNoExt = _file.getName().substring(0, _file.getName().indexOf("."));
-        String[] reportNameSplits = reportNameNoExt.split("-");
-        _month = Month.of(Integer.parseInt(reportNameSplits[1]));
-        _year = Year.of(Integer.parseInt(reportNameSplits[3]));
-        _tempFile = new File(getFinalTempFileAbsolutePath().toString());
-        _outputTempFilePath = getFinalTempFileAbsolutePath();
-        _startOfMonth = LocalDate.of(_year.getValue(), _month, 1);
-        _endOfMonth = _startOfMonth.withDayOfMonth(_startOfMonth.lengthOfMonth());
-        weekEntries = new ArrayList<>();
-        int weekEntryIndex = 0;
-        WeekEntry weekEntry = WeekEntry.of(_startOfMonth, _endOfMonth, _workbook.getSheetAt(0), weekEntryIndex);
-        while (weekEntry.getNumberOfDays() > 0)
-        {
-            weekEntries.add(weekEntry);
-            weekEntry = WeekEntry.of(weekEntries.getLast().getEndOfWeek().plusDays(1), _endOfMonth, _workbook.getSheetAt(0), ++weekEntryIndex);
-        }
+        _month = parseMonth(_file.getName());
+        _year = parseYear(_file.getName());
+        MonthLayout layout = MonthLayout.of(YearMonth.of(_year.getValue(), _month));
+        _startOfMonth = layout.getStartOfMonth();
+        _endOfMonth = layout.getEndOfMonth();
+        // Everything from here on works on the plain model, the workbook is only written back on save
+        _monthSheet = MonthSheetLoader.load(_workbook.getSheetAt(0), layout.getMonth());
+    }
+
+    static Month parseMonth(String reportName)
+    {
+        String reportNameNoExt = reportName.substring(0, reportName.indexOf("."));
+        return Month.of(Integer.parseInt(reportNameNoExt.split("-")[1]));
+    }
+
+    static Year parseYear(String reportName)
+    {
+        String reportNameNoExt = reportName.substring(0, reportName.indexOf("."));
+        return Year.of(Integer.parseInt(reportNameNoExt.split("-")[3]));
     }
 
     public static ReportHandler of(File file)
@@ -97,12 +100,12 @@ public class ReportHandler implements Closeable
         }
         catch (URISyntaxException e)
         {
-            e.printStackTrace();
-            System.err.printf
+            _LOGGER.warn
             (
-                "Error parsing base directory path of [%], falling back to default user directory of [%]\n",
+                "Error parsing base directory path of [{}], falling back to default user directory of [{}]",
                 baseDir,
-                System.getProperty("user.dir")
+                System.getProperty("user.dir"),
+                e
             );
             return of(file, Path.of(System.getProperty("user.dir")));
         }
@@ -116,7 +119,7 @@ public class ReportHandler implements Closeable
         }
         catch (Exception e)
         {
-            e.printStackTrace();
+            _LOGGER.error("Unable to open report {}", file.getName(), e);
         }
         return null;
     }
@@ -135,7 +138,8 @@ public class ReportHandler implements Closeable
             .getRow(1)
             .getCell(0);
         String periodTitle = String.format("%s %d", _month.getDisplayName(TextStyle.FULL, Locale.getDefault()), _year.getValue());
-        cell.setCellValue(periodTitle);
+        if (setCellValue(cell, periodTitle))
+            _dirty = true;
         return this;
     }
 
@@ -145,7 +149,8 @@ public class ReportHandler implements Closeable
             .getSheetAt(0)
             .getRow(3)
             .getCell(5);
-        cell.setCellValue(_startOfMonth.format(_DATE_TIME_FORMATTER));
+        if (setCellValue(cell, _startOfMonth.format(_DATE_TIME_FORMATTER)))
+            _dirty = true;
         return this;
     }
 
@@ -155,68 +160,44 @@ public class ReportHandler implements Closeable
             .getSheetAt(0)
             .getRow(4)
             .getCell(5);
-        cell.setCellValue(_endOfMonth.format(_DATE_TIME_FORMATTER));
+        if (setCellValue(cell, _endOfMonth.format(_DATE_TIME_FORMATTER)))
+            _dirty = true;
         return this;
     }
 
     public ReportHandler updateWeekPeriods()
     {
-        for (int i = 0; i < weekEntries.size(); i++)
-        {
-            weekEntries.get(i)
-                .period(String.format("Week %s", i + 1))
-                .from(weekEntries.get(i).getStartOfWeek().format(_DATE_TIME_FORMATTER))
-                .to(weekEntries.get(i).getEndOfWeek().format(_DATE_TIME_FORMATTER));
-        }
+        if (MonthSheetWriter.writePeriods(_monthSheet, _workbook.getSheetAt(0)))
+            _dirty = true;
         return this;
     }
 
-    public ReportHandler updateContent()
+    public ReportHandler updateContent(LocalDate today) throws IOException
     {
-        for (int i = weekEntries.size() - 1; i >= 0; i--)
-        {
-            int randomInt = _RANDOM_INSTANCE.nextInt(4);
-            WeekEntry weekEntry = weekEntries.get(i);
-            if (weekEntry.hasContent())
-                break;
-            if (weekEntry.isFuture())
-                continue;
-            if (weekEntry.isCurrent())
-                continue;
-            weekEntry
-                .beginAt("18:00")
-                .endAt("23:00")
-                .totalTime("5h/day = 25h/week")
-                .taskDescription(_RANDOM_CONTENTS[randomInt][0])
-                .note(_RANDOM_CONTENTS[randomInt][1])
-                .totalTimeCalculated("25h");
-        }
+        return updateContent(today, RandomContentProvider.of());
+    }
+
+    public ReportHandler updateContent(LocalDate today, ContentProvider contentProvider) throws IOException
+    {
+        _monthSheet.updateContent(today, contentProvider);
         return this;
     }
 
-    public ReportHandler markAllAsSent()
+    public ReportHandler markAllAsSent(LocalDate today)
     {
-        for (int i = weekEntries.size() - 1; i >= 0; i--)
-        {
-            WeekEntry weekEntry = weekEntries.get(i);
-            if (weekEntry.hasBeenSent())
-                break;
-            if (weekEntry.isCurrent() || weekEntry.isFuture())
-                continue;
-            weekEntry.markAsSent();
-        }
+        _monthSheet.markAllAsSent(today);
         return this;
     }
 
-    public boolean hasUnsentContent()
+    public ReportHandler markAsSent(Collection<Integer> weekIndexes)
     {
-        for (int i = weekEntries.size() - 1; i >= 0; i--)
-        {
-            WeekEntry weekEntry = weekEntries.get(i);
-            if (weekEntry.isPast() && weekEntry.hasContent() && !weekEntry.hasBeenSent())
-                return true;
-        }
-        return false;
+        _monthSheet.markAsSent(weekIndexes);
+        return this;
+    }
+
+    public boolean hasUnsentContent(LocalDate today)
+    {
+        return _monthSheet.hasUnsentContent(today);
     }
 
     public String getFinalSheetName()
@@ -240,42 +221,83 @@ public class ReportHandler implements Closeable
         return Path.of(_file.getParent(), getFinalFileName());
     }
 
-    public String getFinalTempFileName()
+    /**
+     * Sets the cell to the given string unless it already holds exactly that string.
+     * Returns whether the cell has actually been changed.
+     */
+    static boolean setCellValue(Cell cell, String value)
     {
-        return String.format
-        (
-            _TEMP_REPORT_FILE_NAME_FORMAT,
-            _month.getValue(),
-            _month.getDisplayName(TextStyle.FULL, Locale.getDefault()),
-            _year.getValue()
-        );
+        if (cell.getCellType() == CellType.STRING && value.equals(cell.getStringCellValue()))
+            return false;
+        cell.setCellValue(value);
+        return true;
     }
 
-    public Path getFinalTempFileAbsolutePath()
+    public boolean isDirty()
     {
-        return Path.of(_file.getParent(), getFinalTempFileName());
+        return _dirty || !getFinalSheetName().equals(_workbook.getSheetName(0)) || _monthSheet.isDirty();
     }
 
     public File save() throws IOException
     {
+        if (!isDirty())
+            return _file;
         return write();
     }
 
     public File write() throws IOException
     {
-        try (OutputStream outputStream = new FileOutputStream(_outputTempFilePath.toString()))
+        List<Cell> changedCells = MonthSheetWriter.write(_monthSheet, _workbook.getSheetAt(0));
+        byte[] bytes = null;
+        // When only week cells changed, they are patched into the package as it is on disk
+        if (_sourceBytes != null && !_dirty && getFinalSheetName().equals(_workbook.getSheetName(0)))
+            bytes = changedCells.isEmpty() ? _sourceBytes : patch(changedCells);
+        if (bytes == null)
         {
+            // Serialized once into memory, the same bytes go to disk and, if needed, into the email
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
             _workbook.setSheetName(0, getFinalSheetName());
-            _workbook.write(outputStream);
+            _workbook.write(buffer);
+            bytes = buffer.toByteArray();
         }
-        File temp = new File(_outputTempFilePath.toString());
-        File dest = new File(_outputFilePath.toString());
-        if (dest.exists())
-            dest.delete();
-        temp.renameTo(dest);
+        // Replaces the report in one step, a crash leaves either the previous or the new version behind
+        DurableFiles.write(_outputFilePath, bytes);
+        _writtenBytes = bytes;
+        _sourceBytes = bytes;
+        File dest = _outputFilePath.toFile();
+        _dirty = false;
+        _monthSheet.markClean();
         return dest;
     }
 
+    /**
+     * Package with the changed cells patched in, {@code null} when it has to be written by POI after all.
+     */
+    private byte[] patch(List<Cell> changedCells)
+    {
+        SortedMap<Integer, SortedMap<Integer, String>> cells = new TreeMap<>();
+        for (Cell cell : changedCells)
+            cells.computeIfAbsent(cell.getRowIndex(), row -> new TreeMap<>()).put(cell.getColumnIndex(), cell.getStringCellValue());
+        String sheetPartName = _workbook.getSheetAt(0).getPackagePart().getPartName().getName().substring(1);
+        try
+        {
+            return SheetPatcher.patch(_sourceBytes, sheetPartName, cells);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            _LOGGER.warn("Unable to patch report {}, writing it as a whole: {}", _file.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Content of the file as of the last write, {@code null} if nothing has been written yet.
+     */
+    public byte[] getWrittenBytes()
+    {
+        return _writtenBytes;
+    }
+
     public Month getMonth()
     {
         return _month;
@@ -301,9 +323,9 @@ public class ReportHandler implements Closeable
         return _endOfMonth;
     }
 
-    public List<WeekEntry> getWeekEntries()
+    public MonthSheet getMonthSheet()
     {
-        return weekEntries;
+        return _monthSheet;
     }
 
     public File getFile()
@@ -0,0 +1,144 @@
+package com.onlyu.auto;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streams the first sheet of an existing report read-only and only picks up the content and conclude
+ * cells of every week into a {@link MonthSheet}, without ever building the {@code XSSFWorkbook} DOM.
+ */
+public class ReportScanner implements XSSFSheetXMLHandler.SheetContentsHandler
+{
+    /**
+     * Thrown from inside the SAX callbacks to stop parsing as soon as the last week row is behind us.
+     */
+    private static final class StopScanning extends RuntimeException
+    {
+        StopScanning()
+        {
+            super("Scanned every week row", null, false, false);
+        }
+    }
+
+    // Content row columns first, then the conclude row columns
+    private static final int[] _CONTENT_COLUMNS =
+    {
+        MonthLayout._BEGIN_AT_COLUMN,
+        MonthLayout._END_AT_COLUMN,
+        MonthLayout._TOTAL_TIME_COLUMN,
+        MonthLayout._TASK_DESCRIPTION_COLUMN,
+        MonthLayout._NOTE_COLUMN,
+    };
+    private static final int[] _CONCLUDE_COLUMNS =
+    {
+        MonthLayout._TOTAL_TIME_CALCULATED_COLUMN,
+        MonthLayout._SENT_COLUMN,
+    };
+
+    private final MonthLayout _layout;
+    private final String[][] _values;
+    private final int _lastRow;
+
+    ReportScanner(MonthLayout layout)
+    {
+        _layout = layout;
+        _values = new String[layout.getWeeks().size()][_CONTENT_COLUMNS.length + _CONCLUDE_COLUMNS.length];
+        _lastRow = layout.getWeeks().getLast().getConcludeRow();
+    }
+
+    public static ReportSnapshot scan(File report) throws IOException
+    {
+        return ReportSnapshot.of(report, load(report));
+    }
+
+    public static MonthSheet load(File report) throws IOException
+    {
+        Month month = ReportHandler.parseMonth(report.getName());
+        Year year = ReportHandler.parseYear(report.getName());
+        ReportScanner scanner = new ReportScanner(MonthLayout.of(YearMonth.of(year.getValue(), month)));
+        try (OPCPackage pkg = OPCPackage.open(report, PackageAccess.READ))
+        {
+            XSSFReader reader = new XSSFReader(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            try (InputStream sheet = sheets.next())
+            {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), new ReadOnlySharedStringsTable(pkg), scanner, false));
+                parser.parse(new InputSource(sheet));
+            }
+            catch (StopScanning e)
+            {
+                // Everything we need has been read
+            }
+        }
+        catch (OpenXML4JException | SAXException | ParserConfigurationException e)
+        {
+            throw new IOException("Unable to scan report " + report.getAbsolutePath(), e);
+        }
+        return scanner.toMonthSheet();
+    }
+
+    private MonthSheet toMonthSheet()
+    {
+        List<MonthSheet.Week> weeks = new ArrayList<>();
+        for (MonthLayout.Week bounds : _layout.getWeeks())
+        {
+            String[] values = _values[bounds.getIndex()];
+            boolean sent = values[6] != null && !values[6].isBlank();
+            weeks.add(MonthSheet.week(bounds, values[0], values[1], values[2], values[3], values[4], values[5], sent));
+        }
+        return MonthSheet.of(_layout, weeks);
+    }
+
+    @Override
+    public void startRow(int rowNum)
+    {
+        if (rowNum > _lastRow)
+            throw new StopScanning();
+    }
+
+    @Override
+    public void endRow(int rowNum)
+    {
+    }
+
+    @Override
+    public void cell(String cellReference, String formattedValue, XSSFComment comment)
+    {
+        CellReference reference = new CellReference(cellReference);
+        int row = reference.getRow();
+        int firstContentRow = MonthLayout.contentRowOf(0);
+        if (row < firstContentRow || row > _lastRow)
+            return;
+        int weekIndex = (row - firstContentRow) / 2;
+        boolean concludeRow = (row - firstContentRow) % 2 != 0;
+        int[] columns = concludeRow ? _CONCLUDE_COLUMNS : _CONTENT_COLUMNS;
+        int offset = concludeRow ? _CONTENT_COLUMNS.length : 0;
+        for (int i = 0; i < columns.length; i++)
+        {
+            if (columns[i] == reference.getCol())
+                _values[weekIndex][offset + i] = formattedValue;
+        }
+    }
+}
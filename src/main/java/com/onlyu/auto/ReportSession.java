@@ -0,0 +1,320 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The reports of a single run. Existing reports are only scanned until something actually has to be
+ * written, then their {@link ReportHandler} is opened once, kept for the rest of the run and saved on close.
+ * Different reports can be worked on from different threads, the same report is only ever touched by one at a time.
+ * Every report is also locked on disk from first use until the session is closed, so that overlapping runs, in
+ * this or another process, take turns on a report instead of overwriting each other's changes.
+ */
+public class ReportSession implements Closeable
+{
+    private static final Logger _LOGGER = LogManager.getLogger(ReportSession.class);
+
+    private final Path _baseDir;
+    private final Semaphore _parsePermits;
+    private final StateLedger _ledger;
+    private final RunMetrics _metrics;
+    private final Map<File, ReportHandler> _handlers = new ConcurrentHashMap<>();
+    private final Map<File, ReentrantLock> _locks = new ConcurrentHashMap<>();
+    private final Map<File, ReportAttachment> _attachments = new ConcurrentHashMap<>();
+    private final Map<File, LockFile> _fileLocks = new ConcurrentHashMap<>();
+
+    ReportSession(Path baseDir, Semaphore parsePermits, StateLedger ledger, RunMetrics metrics)
+    {
+        _baseDir = baseDir;
+        _parsePermits = parsePermits;
+        _ledger = ledger;
+        _metrics = metrics;
+    }
+
+    public static ReportSession of(Path baseDir, Semaphore parsePermits, RunMetrics metrics)
+    {
+        return new ReportSession(baseDir, parsePermits, StateLedger.of(baseDir), metrics);
+    }
+
+    /**
+     * Session on top of a ledger that outlives it, so that week states stay in memory between runs.
+     */
+    public static ReportSession of(Path baseDir, Semaphore parsePermits, StateLedger ledger, RunMetrics metrics)
+    {
+        return new ReportSession(baseDir, parsePermits, ledger, metrics);
+    }
+
+    /**
+     * Locks the reports up front, in name order, so that runs sharing some of their reports cannot deadlock.
+     */
+    public void lockAll(Collection<File> reports) throws IOException, InterruptedException
+    {
+        List<File> sorted = new ArrayList<>(reports);
+        sorted.sort(Comparator.comparing(File::getName));
+        for (File report : sorted)
+        {
+            ReentrantLock lock = lockOf(report);
+            lock.lock();
+            try
+            {
+                ensureLocked(report);
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes the on-disk lock of the report unless the session already holds it, callers hold the in-session lock.
+     */
+    private void ensureLocked(File report) throws IOException, InterruptedException
+    {
+        if (_fileLocks.containsKey(report))
+            return;
+        _fileLocks.put(report, LockFile.acquire(LockFile.lockFileOf(report.toPath()), LockFile._DEFAULT_TIMEOUT));
+    }
+
+    /**
+     * Creates the report from the template when it does not exist yet, otherwise leaves it alone.
+     */
+    public void prepare(File report) throws IOException, InterruptedException
+    {
+        ReentrantLock lock = lockOf(report);
+        lock.lock();
+        try
+        {
+            ensureLocked(report);
+            if (report.exists())
+                return;
+            _LOGGER.info("Report {} not found. Creating a new report from scratch now...", report.getName());
+            ReportHandler handler = open(report)
+                .updatePeriodTitle()
+                .updateStartOfMonth()
+                .updateEndOfMonth()
+                .updateWeekPeriods();
+            _LOGGER.info("Created report {} is assigned to month: {}", report.getName(), Unbox.box(handler.getMonth().getValue()));
+            _LOGGER.info("Created report {} is assigned to year:  {}", report.getName(), Unbox.box(handler.getYear().getValue()));
+            _LOGGER.info("Created report {} start date:           {}", report.getName(), handler.getStartOfMonth().format(ReportHandler._DATE_TIME_FORMATTER));
+            _LOGGER.info("Created report {} end date:             {}", report.getName(), handler.getEndOfMonth().format(ReportHandler._DATE_TIME_FORMATTER));
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Week states of the report, taken from the loaded workbook if there is one, from the state ledger
+     * while it is still up to date with the file, and streamed from disk otherwise.
+     */
+    public ReportSnapshot snapshot(File report) throws IOException, InterruptedException
+    {
+        ReentrantLock lock = lockOf(report);
+        lock.lock();
+        try
+        {
+            ensureLocked(report);
+            ReportHandler handler = _handlers.get(report);
+            if (handler != null)
+                return ReportSnapshot.of(handler);
+            ReportSnapshot snapshot = _ledger.lookup(report);
+            if (snapshot != null)
+            {
+                _metrics.increment(RunMetrics._LEDGER_HITS);
+                return snapshot;
+            }
+            _parsePermits.acquire();
+            try
+            {
+                long start = _metrics.start();
+                snapshot = ReportScanner.scan(report);
+                _metrics.stop(RunMetrics._SCAN, start);
+            }
+            finally
+            {
+                _parsePermits.release();
+            }
+            _ledger.record(snapshot);
+            return snapshot;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The full workbook of the report, loaded on first use only.
+     */
+    public ReportHandler handler(File report) throws IOException, InterruptedException
+    {
+        ReentrantLock lock = lockOf(report);
+        lock.lock();
+        try
+        {
+            ensureLocked(report);
+            return open(report);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private ReportHandler open(File report) throws IOException, InterruptedException
+    {
+        ReportHandler handler = _handlers.get(report);
+        if (handler != null)
+            return handler;
+        _parsePermits.acquire();
+        try
+        {
+            long start = _metrics.start();
+            handler = ReportHandler.of(report, _baseDir);
+            _metrics.stop(RunMetrics._HANDLER_OPEN, start);
+        }
+        finally
+        {
+            _parsePermits.release();
+        }
+        if (handler == null)
+            throw new IOException("Unable to open report " + report.getAbsolutePath());
+        _handlers.put(report, handler);
+        return handler;
+    }
+
+    /**
+     * Flushes pending changes of the report, if it has been loaded at all, and returns the file on disk.
+     */
+    public File save(File report) throws IOException
+    {
+        ReentrantLock lock = lockOf(report);
+        lock.lock();
+        try
+        {
+            ReportHandler handler = _handlers.get(report);
+            return handler != null ? save(handler) : report;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The report as it should go out: pending changes are flushed first, then the bytes just written are
+     * used when there are any, otherwise the file on disk gets read. Reused until the report changes again.
+     */
+    public ReportAttachment attachment(File report) throws IOException, InterruptedException
+    {
+        ReentrantLock lock = lockOf(report);
+        lock.lock();
+        try
+        {
+            ensureLocked(report);
+            ReportHandler handler = _handlers.get(report);
+            if (handler != null)
+                save(handler);
+            ReportAttachment attachment = _attachments.get(report);
+            if (attachment != null)
+                return attachment;
+            attachment = handler != null && handler.getWrittenBytes() != null
+                ? ReportAttachment.of(report.getName(), handler.getWrittenBytes())
+                : ReportAttachment.read(report);
+            _attachments.put(report, attachment);
+            return attachment;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private File save(ReportHandler handler) throws IOException
+    {
+        if (!handler.isDirty())
+            return handler.getFile();
+        _attachments.remove(handler.getFile());
+        long start = _metrics.start();
+        File file = handler.save();
+        _metrics.stop(RunMetrics._SAVE, start);
+        _metrics.add(RunMetrics._BYTES_WRITTEN, file.length());
+        return file;
+    }
+
+    private ReentrantLock lockOf(File report)
+    {
+        return _locks.computeIfAbsent(report, key -> new ReentrantLock());
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        IOException failure = null;
+        for (ReportHandler handler : _handlers.values())
+        {
+            try (handler)
+            {
+                save(handler);
+                _ledger.record(ReportSnapshot.of(handler));
+            }
+            catch (IOException e)
+            {
+                _LOGGER.error("Unable to save report {}", handler.getFile().getAbsolutePath());
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        _handlers.clear();
+        _attachments.clear();
+        // Only let go of the reports once they are safely on disk
+        for (LockFile fileLock : _fileLocks.values())
+        {
+            try
+            {
+                fileLock.close();
+            }
+            catch (IOException e)
+            {
+                _LOGGER.warn("Unable to release lock {}", fileLock.getPath());
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        _fileLocks.clear();
+        try
+        {
+            _ledger.save();
+        }
+        catch (IOException e)
+        {
+            _LOGGER.error("Unable to save the state ledger of {}", _baseDir);
+            if (failure == null)
+                failure = e;
+            else
+                failure.addSuppressed(e);
+        }
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -0,0 +1,80 @@
+package com.onlyu.auto;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.TextStyle;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Read-only state of a report at one point in time, a {@link MonthSheet} of its own, so it can be taken
+ * from a loaded {@link ReportHandler}, a streaming scan by {@link ReportScanner} or the {@link StateLedger}.
+ */
+public class ReportSnapshot
+{
+    private final File _file;
+    private final MonthSheet _monthSheet;
+
+    ReportSnapshot(File file, MonthSheet monthSheet)
+    {
+        _file = file;
+        _monthSheet = monthSheet;
+    }
+
+    public static ReportSnapshot of(File file, MonthSheet monthSheet)
+    {
+        return new ReportSnapshot(file, monthSheet);
+    }
+
+    public static ReportSnapshot of(ReportHandler handler)
+    {
+        // Copied, the handler keeps changing its own model
+        return new ReportSnapshot(handler.getFile(), handler.getMonthSheet().copy());
+    }
+
+    /**
+     * Tells whether {@link ReportHandler#updateContent(LocalDate, ContentProvider)} would fill any week.
+     */
+    public boolean needsContentUpdate(LocalDate today, ContentProvider contentProvider) throws IOException
+    {
+        return _monthSheet.needsContentUpdate(today, contentProvider);
+    }
+
+    public List<MonthSheet.Week> getUnsentWeeks(LocalDate today)
+    {
+        return _monthSheet.getUnsentWeeks(today);
+    }
+
+    public File getFile()
+    {
+        return _file;
+    }
+
+    public Month getMonth()
+    {
+        return _monthSheet.getMonth().getMonth();
+    }
+
+    public String getMonthFullname()
+    {
+        return getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault());
+    }
+
+    public Year getYear()
+    {
+        return Year.of(_monthSheet.getMonth().getYear());
+    }
+
+    public MonthSheet getMonthSheet()
+    {
+        return _monthSheet;
+    }
+
+    public List<MonthSheet.Week> getWeeks()
+    {
+        return _monthSheet.getWeeks();
+    }
+}
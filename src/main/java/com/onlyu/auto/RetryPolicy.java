@@ -0,0 +1,200 @@
+package com.onlyu.auto;
+
+import jakarta.mail.AuthenticationFailedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+import org.eclipse.angus.mail.util.MailConnectException;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Exponential backoff with jitter, bounded by a total deadline. Attempts run asynchronously on virtual
+ * threads and only errors that can go away on their own (connection refused, timeouts, DNS, dropped
+ * sockets) are retried; anything else, bad credentials in particular, fails right away.
+ */
+public class RetryPolicy
+{
+    private static final Logger _LOGGER = LogManager.getLogger(RetryPolicy.class);
+
+    public static final Duration _DEFAULT_INITIAL_DELAY = Duration.ofMillis(500);
+    public static final Duration _DEFAULT_MAX_DELAY = Duration.ofSeconds(30);
+    public static final Duration _DEFAULT_DEADLINE = Duration.ofMinutes(2);
+    public static final double _DEFAULT_MULTIPLIER = 2.0;
+    public static final double _DEFAULT_JITTER = 0.5;
+
+    private static final Pattern _REPLY_CODE_PATTERN = Pattern.compile("(?:^|response: )\\s*([2-5]\\d\\d)(?:[ -]|$)", Pattern.MULTILINE);
+
+    private static final Executor _EXECUTOR = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("retry-", 0).factory());
+
+    private final Duration _initialDelay;
+    private final Duration _maxDelay;
+    private final Duration _deadline;
+    private final double _multiplier;
+    private final double _jitter;
+
+    RetryPolicy(Duration initialDelay, Duration maxDelay, Duration deadline, double multiplier, double jitter)
+    {
+        _initialDelay = initialDelay;
+        _maxDelay = maxDelay;
+        _deadline = deadline;
+        _multiplier = multiplier;
+        _jitter = jitter;
+    }
+
+    public static RetryPolicy of()
+    {
+        return new RetryPolicy(_DEFAULT_INITIAL_DELAY, _DEFAULT_MAX_DELAY, _DEFAULT_DEADLINE, _DEFAULT_MULTIPLIER, _DEFAULT_JITTER);
+    }
+
+    public static RetryPolicy of(Duration initialDelay, Duration maxDelay, Duration deadline)
+    {
+        return new RetryPolicy(initialDelay, maxDelay, deadline, _DEFAULT_MULTIPLIER, _DEFAULT_JITTER);
+    }
+
+    public RetryPolicy withInitialDelay(Duration initialDelay)
+    {
+        return new RetryPolicy(initialDelay, _maxDelay, _deadline, _multiplier, _jitter);
+    }
+
+    public RetryPolicy withMaxDelay(Duration maxDelay)
+    {
+        return new RetryPolicy(_initialDelay, maxDelay, _deadline, _multiplier, _jitter);
+    }
+
+    public RetryPolicy withDeadline(Duration deadline)
+    {
+        return new RetryPolicy(_initialDelay, _maxDelay, deadline, _multiplier, _jitter);
+    }
+
+    /**
+     * Runs the action until it succeeds, fails with a non-retryable error or the deadline passes. In the latter
+     * case the future completes with a {@link TimeoutException}, whose cause is the last error seen when the
+     * deadline passed in between two attempts. An attempt still hanging at the deadline does not hold up the
+     * future, its outcome is ignored.
+     */
+    public <T> CompletableFuture<T> execute(String description, Callable<T> action)
+    {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long deadline = System.nanoTime() + _deadline.toNanos();
+        attempt(description, action, 1, deadline, result, _EXECUTOR);
+        return result.orTimeout(_deadline.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private <T> void attempt(String description, Callable<T> action, int attempt, long deadline, CompletableFuture<T> result, Executor executor)
+    {
+        // Attempts run on other threads, they keep logging under the context of the caller
+        executor.execute(LogContext.inherit(() ->
+        {
+            if (result.isDone())
+                return;
+            try
+            {
+                result.complete(action.call());
+                return;
+            }
+            catch (Exception e)
+            {
+                if (!isRetryable(e))
+                {
+                    _LOGGER.warn("{} failed with a permanent error, not retrying: {}", description, e.getMessage());
+                    result.completeExceptionally(e);
+                    return;
+                }
+                long delay = delayBefore(attempt + 1).toNanos();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                {
+                    result.completeExceptionally(new TimeoutException(String.format("%s gave up after %d attempt(s)", description, attempt)).initCause(e));
+                    return;
+                }
+                delay = Math.min(delay, remaining);
+                _LOGGER.warn("{} failed (attempt {}), retrying in {} ms: {}", description, Unbox.box(attempt), Unbox.box(TimeUnit.NANOSECONDS.toMillis(delay)), e.getMessage());
+                attempt(description, action, attempt + 1, deadline, result, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, _EXECUTOR));
+            }
+        }));
+    }
+
+    /**
+     * Backoff before the given attempt (the first attempt has none), randomized by the jitter factor.
+     */
+    public Duration delayBefore(int attempt)
+    {
+        if (attempt <= 1)
+            return Duration.ZERO;
+        double base = _initialDelay.toMillis() * Math.pow(_multiplier, attempt - 2);
+        double capped = Math.min(base, _maxDelay.toMillis());
+        double jittered = capped * (1 - _jitter * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(Math.max(1, Math.round(jittered)));
+    }
+
+    /**
+     * Whether the failure is transient. SMTP replies say so themselves, {@code 4xx} means try again later and
+     * {@code 5xx} means never. Otherwise authentication and TLS certificate errors will fail the same way next
+     * time, network level errors might not.
+     */
+    public static boolean isRetryable(Throwable error)
+    {
+        for (Throwable cause = error; cause != null; cause = cause.getCause())
+        {
+            int replyCode = replyCodeOf(cause);
+            if (replyCode >= 400)
+                return replyCode < 500;
+            if (cause instanceof AuthenticationFailedException)
+                return false;
+            if (cause instanceof SSLHandshakeException && !(cause.getCause() instanceof IOException))
+                return false;
+            if (cause instanceof MailConnectException
+                || cause instanceof SocketException
+                || cause instanceof SocketTimeoutException
+                || cause instanceof UnknownHostException)
+                return true;
+            if (cause.getCause() == cause)
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * SMTP reply code an error carries, {@code -1} when it has none. The mail client puts the server reply
+     * at the start of the message ({@code 454 4.7.0 Try again later}), or after {@code response:} when the
+     * greeting was refused.
+     */
+    static int replyCodeOf(Throwable error)
+    {
+        String message = error.getMessage();
+        if (message == null)
+            return -1;
+        Matcher matcher = _REPLY_CODE_PATTERN.matcher(message);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    public Duration getInitialDelay()
+    {
+        return _initialDelay;
+    }
+
+    public Duration getMaxDelay()
+    {
+        return _maxDelay;
+    }
+
+    public Duration getDeadline()
+    {
+        return _deadline;
+    }
+}
@@ -0,0 +1,65 @@
+package com.onlyu.auto;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Everything a single run decides upon that is not on disk: the day it runs as, read from the clock once
+ * at the start so that a run crossing midnight still sees one consistent date, where the content of past weeks
+ * comes from, and the metrics it records.
+ */
+public class RunContext
+{
+    private final Clock _clock;
+    private final LocalDate _today;
+    private final ContentProvider _contentProvider;
+    private final RunMetrics _metrics;
+
+    RunContext(Clock clock, ContentProvider contentProvider, RunMetrics metrics)
+    {
+        _clock = clock;
+        _today = LocalDate.now(clock);
+        _contentProvider = contentProvider;
+        _metrics = metrics;
+    }
+
+    public static RunContext of(Clock clock, RunMetrics metrics)
+    {
+        return new RunContext(clock, RandomContentProvider.of(), metrics);
+    }
+
+    public static RunContext of(Clock clock, ContentProvider contentProvider, RunMetrics metrics)
+    {
+        return new RunContext(clock, contentProvider, metrics);
+    }
+
+    /**
+     * Clock that always reads the start of the given day, for runs pretending to happen on another date.
+     */
+    public static Clock fixedAt(LocalDate asOf)
+    {
+        ZoneId zone = ZoneId.systemDefault();
+        return Clock.fixed(asOf.atStartOfDay(zone).toInstant(), zone);
+    }
+
+    public Clock getClock()
+    {
+        return _clock;
+    }
+
+    public LocalDate getToday()
+    {
+        return _today;
+    }
+
+    public ContentProvider getContentProvider()
+    {
+        return _contentProvider;
+    }
+
+    public RunMetrics getMetrics()
+    {
+        return _metrics;
+    }
+}
@@ -0,0 +1,224 @@
+package com.onlyu.auto;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durations and counters of a single run of a profile. Phases are timed with {@link #start()} and
+ * {@link #stop(String, long)}, and the whole lot is exported as a JSON file per run plus a Prometheus
+ * textfile-collector file per profile that gets replaced on every run.
+ */
+public class RunMetrics
+{
+    public static final String _HANDLER_OPEN = "handler_open";
+    public static final String _UPDATE_CONTENT = "update_content";
+    public static final String _SAVE = "save";
+    public static final String _SCAN = "scan";
+    public static final String _MIME_BUILD = "mime_build";
+    public static final String _ATTACHMENT_OPTIMIZE = "attachment_optimize";
+    public static final String _CONNECT = "connect";
+    public static final String _SEND = "send";
+    public static final String _MARK_AS_SENT = "mark_as_sent";
+
+    public static final String _BYTES_WRITTEN = "bytes_written";
+    public static final String _ATTACHMENTS = "attachments";
+    public static final String _ATTACHMENT_BYTES = "attachment_bytes";
+    public static final String _ATTACHMENT_BYTES_SAVED = "attachment_bytes_saved";
+    public static final String _CONNECT_ATTEMPTS = "connect_attempts";
+    public static final String _EMAILS_SENT = "emails_sent";
+    public static final String _LEDGER_HITS = "ledger_hits";
+
+    public static final String _METRIC_PREFIX = "auto_timesheet_";
+    public static final String _JSON_FILE_NAME_FORMAT = "%s-%s.json";
+    public static final String _PROMETHEUS_FILE_NAME_FORMAT = "auto_timesheet_%s.prom";
+    public static final DateTimeFormatter _FILE_TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private static final class Phase
+    {
+        private final LongAdder _count = new LongAdder();
+        private final LongAdder _nanos = new LongAdder();
+    }
+
+    private final Profile _profile;
+    private final Instant _startedAt = Instant.now();
+    private final long _startedAtNanos = System.nanoTime();
+    private final Map<String, Phase> _phases = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> _counters = new ConcurrentHashMap<>();
+    private volatile long _durationNanos;
+    private volatile boolean _success;
+
+    RunMetrics(Profile profile)
+    {
+        _profile = profile;
+    }
+
+    public static RunMetrics of(Profile profile)
+    {
+        return new RunMetrics(profile);
+    }
+
+    public long start()
+    {
+        return System.nanoTime();
+    }
+
+    public void stop(String phase, long startNanos)
+    {
+        Phase entry = _phases.computeIfAbsent(phase, key -> new Phase());
+        entry._count.increment();
+        entry._nanos.add(System.nanoTime() - startNanos);
+    }
+
+    public void increment(String counter)
+    {
+        add(counter, 1);
+    }
+
+    public void add(String counter, long delta)
+    {
+        _counters.computeIfAbsent(counter, key -> new LongAdder()).add(delta);
+    }
+
+    public long get(String counter)
+    {
+        LongAdder adder = _counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public void finish(boolean success)
+    {
+        _durationNanos = System.nanoTime() - _startedAtNanos;
+        _success = success;
+    }
+
+    /**
+     * Short, file name and label friendly id of the profile: project name plus a hash of the base directory.
+     */
+    public String getProfileId()
+    {
+        String project = _profile.getProjectName().replaceAll("[^A-Za-z0-9_]", "_").toLowerCase(Locale.ROOT);
+        return String.format(Locale.ROOT, "%s_%08x", project, _profile.getBaseDir().toAbsolutePath().toString().hashCode());
+    }
+
+    public void export(Path metricsDir) throws IOException
+    {
+        Files.createDirectories(metricsDir);
+        writeAtomically(metricsDir.resolve(String.format(_JSON_FILE_NAME_FORMAT, getProfileId(), _FILE_TIMESTAMP_FORMATTER.format(_startedAt))), toJson());
+        writeAtomically(metricsDir.resolve(String.format(_PROMETHEUS_FILE_NAME_FORMAT, getProfileId())), toPrometheus());
+    }
+
+    public String toJson()
+    {
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"profile\": \"").append(escapeJson(_profile.getProjectName())).append("\",\n");
+        sb.append("  \"profileId\": \"").append(escapeJson(getProfileId())).append("\",\n");
+        sb.append("  \"baseDir\": \"").append(escapeJson(_profile.getBaseDir().toString())).append("\",\n");
+        sb.append("  \"startedAt\": \"").append(_startedAt).append("\",\n");
+        sb.append("  \"durationMillis\": ").append(nanosToMillis(_durationNanos)).append(",\n");
+        sb.append("  \"success\": ").append(_success).append(",\n");
+        sb.append("  \"phases\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Phase> entry : new TreeMap<>(_phases).entrySet())
+        {
+            sb.append(separator).append("    \"").append(entry.getKey()).append("\": { \"count\": ").append(entry.getValue()._count.sum())
+                .append(", \"millis\": ").append(nanosToMillis(entry.getValue()._nanos.sum())).append(" }");
+            separator = ",\n";
+        }
+        sb.append(_phases.isEmpty() ? "},\n" : "\n  },\n");
+        sb.append("  \"counters\": {");
+        separator = "\n";
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(_counters).entrySet())
+        {
+            sb.append(separator).append("    \"").append(entry.getKey()).append("\": ").append(entry.getValue().sum());
+            separator = ",\n";
+        }
+        sb.append(_counters.isEmpty() ? "}\n" : "\n  }\n");
+        return sb.append("}\n").toString();
+    }
+
+    public String toPrometheus()
+    {
+        String labels = String.format("profile=\"%s\",project=\"%s\"", escapeLabel(getProfileId()), escapeLabel(_profile.getProjectName()));
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP ").append(_METRIC_PREFIX).append("last_run_timestamp_seconds Start of the last run\n");
+        sb.append("# TYPE ").append(_METRIC_PREFIX).append("last_run_timestamp_seconds gauge\n");
+        sb.append(_METRIC_PREFIX).append("last_run_timestamp_seconds{").append(labels).append("} ").append(_startedAt.getEpochSecond()).append('\n');
+        sb.append("# HELP ").append(_METRIC_PREFIX).append("last_run_duration_seconds Duration of the last run\n");
+        sb.append("# TYPE ").append(_METRIC_PREFIX).append("last_run_duration_seconds gauge\n");
+        sb.append(_METRIC_PREFIX).append("last_run_duration_seconds{").append(labels).append("} ").append(nanosToSeconds(_durationNanos)).append('\n');
+        sb.append("# HELP ").append(_METRIC_PREFIX).append("last_run_success Whether the last run succeeded\n");
+        sb.append("# TYPE ").append(_METRIC_PREFIX).append("last_run_success gauge\n");
+        sb.append(_METRIC_PREFIX).append("last_run_success{").append(labels).append("} ").append(_success ? 1 : 0).append('\n');
+        sb.append("# HELP ").append(_METRIC_PREFIX).append("phase_duration_seconds Time spent per phase in the last run\n");
+        sb.append("# TYPE ").append(_METRIC_PREFIX).append("phase_duration_seconds gauge\n");
+        for (Map.Entry<String, Phase> entry : new TreeMap<>(_phases).entrySet())
+            sb.append(_METRIC_PREFIX).append("phase_duration_seconds{").append(labels).append(",phase=\"").append(entry.getKey()).append("\"} ").append(nanosToSeconds(entry.getValue()._nanos.sum())).append('\n');
+        sb.append("# HELP ").append(_METRIC_PREFIX).append("phase_count Number of times each phase ran in the last run\n");
+        sb.append("# TYPE ").append(_METRIC_PREFIX).append("phase_count gauge\n");
+        for (Map.Entry<String, Phase> entry : new TreeMap<>(_phases).entrySet())
+            sb.append(_METRIC_PREFIX).append("phase_count{").append(labels).append(",phase=\"").append(entry.getKey()).append("\"} ").append(entry.getValue()._count.sum()).append('\n');
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(_counters).entrySet())
+        {
+            sb.append("# TYPE ").append(_METRIC_PREFIX).append("last_run_").append(entry.getKey()).append(" gauge\n");
+            sb.append(_METRIC_PREFIX).append("last_run_").append(entry.getKey()).append('{').append(labels).append("} ").append(entry.getValue().sum()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The textfile collector may read at any moment, so files are only ever replaced as a whole.
+     */
+    private static void writeAtomically(Path path, String content) throws IOException
+    {
+        DurableFiles.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String nanosToMillis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static String nanosToSeconds(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1_000_000_000.0);
+    }
+
+    private static String escapeJson(String value)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (char c : value.toCharArray())
+        {
+            switch (c)
+            {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default ->
+                {
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int)c));
+                    else
+                        sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String escapeLabel(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,279 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+public class RunOptions
+{
+    private static final Logger _LOGGER = LogManager.getLogger(RunOptions.class);
+
+    public static final String _NO_EMAIL_MODE_FLAG = "--no-email-mode";
+    public static final String _DRY_RUN_FLAG = "--dry-run";
+    public static final String _MAX_CONCURRENT_PARSES_OPTION = "--max-parses=";
+    public static final String _RETRY_INITIAL_DELAY_OPTION = "--retry-initial-delay=";
+    public static final String _RETRY_MAX_DELAY_OPTION = "--retry-max-delay=";
+    public static final String _RETRY_DEADLINE_OPTION = "--retry-deadline=";
+    public static final String _BACKFILL_OPTION = "--backfill=";
+    public static final String _BACKFILL_RANGE_SEPARATOR = "..";
+    public static final String _COMBINE_FLAG = "--combine";
+    public static final String _METRICS_DIR_OPTION = "--metrics-dir=";
+    public static final String _SLIM_ATTACHMENTS_FLAG = "--slim-attachments";
+    public static final String _AS_OF_OPTION = "--as-of=";
+    public static final String _CONTENT_OPTION = "--content=";
+    public static final String _DAEMON_FLAG = "--daemon";
+    public static final String _DAEMON_INTERVAL_OPTION = "--daemon-interval=";
+    public static final String _SMTP_OPTION = "--smtp=";
+    public static final String _STAND_IN_LATENCY_OPTION = "--stand-in-latency=";
+    public static final String _STAND_IN_FAILURE_RATE_OPTION = "--stand-in-failure-rate=";
+    public static final String _LOAD_ROUNDS_OPTION = "--load-rounds=";
+    public static final Duration _DEFAULT_DAEMON_INTERVAL = Duration.ofHours(1);
+    public static final int _DEFAULT_MAX_CONCURRENT_PARSES = 8;
+
+    private boolean _noEmailMode;
+    private boolean _dryRunMode;
+    private int _maxConcurrentParses = _DEFAULT_MAX_CONCURRENT_PARSES;
+    private RetryPolicy _retryPolicy = RetryPolicy.of();
+    private YearMonth _backfillFrom;
+    private YearMonth _backfillTo;
+    private boolean _combineMode;
+    private Path _metricsDir;
+    private boolean _slimAttachments;
+    private Clock _clock = Clock.systemDefaultZone();
+    private String _contentSource = ContentProvider._RANDOM_SOURCE;
+    private boolean _daemonMode;
+    private Duration _daemonInterval = _DEFAULT_DAEMON_INTERVAL;
+    private MailEndpoint _mailEndpoint = MailEndpoint._DEFAULT;
+    private Duration _standInLatency = Duration.ZERO;
+    private double _standInFailureRate;
+    private int _loadRounds = 1;
+
+    RunOptions()
+    {
+    }
+
+    public static RunOptions parse(String[] args, int from)
+    {
+        RunOptions options = new RunOptions();
+        for (int i = from; i < args.length; i++)
+        {
+            String arg = args[i];
+            if (_NO_EMAIL_MODE_FLAG.equals(arg))
+                options._noEmailMode = true;
+            else if (_DRY_RUN_FLAG.equals(arg))
+                options._dryRunMode = true;
+            else if (arg.startsWith(_MAX_CONCURRENT_PARSES_OPTION))
+                options._maxConcurrentParses = Integer.parseInt(arg.substring(_MAX_CONCURRENT_PARSES_OPTION.length()));
+            else if (arg.startsWith(_RETRY_INITIAL_DELAY_OPTION))
+                options._retryPolicy = options._retryPolicy.withInitialDelay(parseDuration(arg.substring(_RETRY_INITIAL_DELAY_OPTION.length())));
+            else if (arg.startsWith(_RETRY_MAX_DELAY_OPTION))
+                options._retryPolicy = options._retryPolicy.withMaxDelay(parseDuration(arg.substring(_RETRY_MAX_DELAY_OPTION.length())));
+            else if (arg.startsWith(_RETRY_DEADLINE_OPTION))
+                options._retryPolicy = options._retryPolicy.withDeadline(parseDuration(arg.substring(_RETRY_DEADLINE_OPTION.length())));
+            else if (arg.startsWith(_BACKFILL_OPTION))
+            {
+                String range = arg.substring(_BACKFILL_OPTION.length());
+                int separator = range.indexOf(_BACKFILL_RANGE_SEPARATOR);
+                options._backfillFrom = YearMonth.parse(separator < 0 ? range : range.substring(0, separator));
+                options._backfillTo = separator < 0 ? options._backfillFrom : YearMonth.parse(range.substring(separator + _BACKFILL_RANGE_SEPARATOR.length()));
+                if (options._backfillTo.isBefore(options._backfillFrom))
+                    throw new IllegalArgumentException("Backfill range ends before it starts: " + range);
+            }
+            else if (_COMBINE_FLAG.equals(arg))
+                options._combineMode = true;
+            else if (arg.startsWith(_METRICS_DIR_OPTION))
+                options._metricsDir = Path.of(arg.substring(_METRICS_DIR_OPTION.length()));
+            else if (_SLIM_ATTACHMENTS_FLAG.equals(arg))
+                options._slimAttachments = true;
+            else if (arg.startsWith(_AS_OF_OPTION))
+                options._clock = RunContext.fixedAt(LocalDate.parse(arg.substring(_AS_OF_OPTION.length())));
+            else if (arg.startsWith(_CONTENT_OPTION))
+                options._contentSource = arg.substring(_CONTENT_OPTION.length());
+            else if (_DAEMON_FLAG.equals(arg))
+                options._daemonMode = true;
+            else if (arg.startsWith(_DAEMON_INTERVAL_OPTION))
+                options._daemonInterval = parseDuration(arg.substring(_DAEMON_INTERVAL_OPTION.length()));
+            else if (arg.startsWith(_SMTP_OPTION))
+                options._mailEndpoint = MailEndpoint.parse(arg.substring(_SMTP_OPTION.length()));
+            else if (arg.startsWith(_STAND_IN_LATENCY_OPTION))
+                options._standInLatency = parseDuration(arg.substring(_STAND_IN_LATENCY_OPTION.length()));
+            else if (arg.startsWith(_STAND_IN_FAILURE_RATE_OPTION))
+                options._standInFailureRate = Double.parseDouble(arg.substring(_STAND_IN_FAILURE_RATE_OPTION.length()));
+            else if (arg.startsWith(_LOAD_ROUNDS_OPTION))
+                options._loadRounds = Integer.parseInt(arg.substring(_LOAD_ROUNDS_OPTION.length()));
+            else
+                _LOGGER.warn("Ignoring unknown option [{}]", arg);
+        }
+        options._noEmailMode = options._dryRunMode ? true : options._noEmailMode;
+        if (options._maxConcurrentParses < 1)
+            throw new IllegalArgumentException("Maximum number of concurrent parses must be at least 1");
+        if (options._daemonInterval.isNegative() || options._daemonInterval.isZero())
+            throw new IllegalArgumentException("Daemon interval must be positive");
+        if (options._standInFailureRate < 0 || options._standInFailureRate > 1)
+            throw new IllegalArgumentException("Stand-in failure rate must be between 0 and 1");
+        if (options._loadRounds < 1)
+            throw new IllegalArgumentException("Number of load rounds must be at least 1");
+        return options;
+    }
+
+    /**
+     * Same options, emails going out through another mail server.
+     */
+    public RunOptions withMailEndpoint(MailEndpoint mailEndpoint)
+    {
+        RunOptions options = new RunOptions();
+        options._noEmailMode = _noEmailMode;
+        options._dryRunMode = _dryRunMode;
+        options._maxConcurrentParses = _maxConcurrentParses;
+        options._retryPolicy = _retryPolicy;
+        options._backfillFrom = _backfillFrom;
+        options._backfillTo = _backfillTo;
+        options._combineMode = _combineMode;
+        options._metricsDir = _metricsDir;
+        options._slimAttachments = _slimAttachments;
+        options._clock = _clock;
+        options._contentSource = _contentSource;
+        options._daemonMode = _daemonMode;
+        options._daemonInterval = _daemonInterval;
+        options._mailEndpoint = mailEndpoint;
+        options._standInLatency = _standInLatency;
+        options._standInFailureRate = _standInFailureRate;
+        options._loadRounds = _loadRounds;
+        return options;
+    }
+
+    /**
+     * Parses durations such as {@code 500ms}, {@code 30s} or {@code 2m}, plain numbers are seconds.
+     */
+    static Duration parseDuration(String value)
+    {
+        if (value.endsWith("ms"))
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        if (value.endsWith("s"))
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        if (value.endsWith("m"))
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        if (value.endsWith("h"))
+            return Duration.ofHours(Long.parseLong(value.substring(0, value.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    public boolean isNoEmailMode()
+    {
+        return _noEmailMode;
+    }
+
+    public boolean isDryRunMode()
+    {
+        return _dryRunMode;
+    }
+
+    public int getMaxConcurrentParses()
+    {
+        return _maxConcurrentParses;
+    }
+
+    public RetryPolicy getRetryPolicy()
+    {
+        return _retryPolicy;
+    }
+
+    public boolean isBackfillMode()
+    {
+        return _backfillFrom != null;
+    }
+
+    public YearMonth getBackfillFrom()
+    {
+        return _backfillFrom;
+    }
+
+    public YearMonth getBackfillTo()
+    {
+        return _backfillTo;
+    }
+
+    public boolean isCombineMode()
+    {
+        return _combineMode;
+    }
+
+    /**
+     * Directory the per-run metrics are exported to, {@code null} when metrics are not exported.
+     */
+    public Path getMetricsDir()
+    {
+        return _metricsDir;
+    }
+
+    /**
+     * Whether attachments also drop the strings and cell formats that are no longer used, the reports on disk stay as they are.
+     */
+    public boolean isSlimAttachments()
+    {
+        return _slimAttachments;
+    }
+
+    /**
+     * Clock runs take their date from, fixed at the start of the {@code --as-of} day when one is given.
+     */
+    public Clock getClock()
+    {
+        return _clock;
+    }
+
+    /**
+     * Where past weeks get their content from, {@code random}, {@code worklog:<file>} or {@code git:<repository>}.
+     */
+    public String getContentSource()
+    {
+        return _contentSource;
+    }
+
+    public boolean isDaemonMode()
+    {
+        return _daemonMode;
+    }
+
+    /**
+     * Longest time the daemon stays idle between two runs when nothing changes on disk.
+     */
+    public Duration getDaemonInterval()
+    {
+        return _daemonInterval;
+    }
+
+    public MailEndpoint getMailEndpoint()
+    {
+        return _mailEndpoint;
+    }
+
+    /**
+     * How long the local SMTP stand-in holds back every reply, roughly one round trip to a real server.
+     */
+    public Duration getStandInLatency()
+    {
+        return _standInLatency;
+    }
+
+    /**
+     * Share of the messages the local SMTP stand-in turns down with a transient error, between 0 and 1.
+     */
+    public double getStandInFailureRate()
+    {
+        return _standInFailureRate;
+    }
+
+    /**
+     * How many times the load harness runs every synthetic profile, the later rounds measure runs with nothing left to send.
+     */
+    public int getLoadRounds()
+    {
+        return _loadRounds;
+    }
+}
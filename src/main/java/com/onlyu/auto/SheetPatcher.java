@@ -0,0 +1,253 @@
+package com.onlyu.auto;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a handful of changed string cells into an existing xlsx package without going through POI. The one
+ * worksheet part is streamed through StAX with the changed cells swapped for inline strings, everything else,
+ * shared strings and styles included, is copied over still compressed, byte for byte. The cost follows the
+ * size of the sheet part and the change, not the size of the package.
+ */
+public final class SheetPatcher
+{
+    private static final XMLInputFactory _INPUT_FACTORY = newInputFactory();
+    private static final XMLOutputFactory _OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    private static final XMLEventFactory _EVENT_FACTORY = XMLEventFactory.newFactory();
+
+    private SheetPatcher()
+    {
+    }
+
+    private static XMLInputFactory newInputFactory()
+    {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Package with the given cells of the sheet part set to the given strings, cells are keyed by row and
+     * then column, both zero based.
+     */
+    public static byte[] patch(byte[] source, String sheetPartName, SortedMap<Integer, SortedMap<Integer, String>> cells) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(source.length + 1024);
+        try (ZipFile zipFile = ZipFile.builder().setSeekableByteChannel(new SeekableInMemoryByteChannel(source)).get();
+             ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(buffer))
+        {
+            boolean patched = false;
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements())
+            {
+                ZipArchiveEntry entry = entries.nextElement();
+                if (!entry.getName().equals(sheetPartName))
+                {
+                    zipOutputStream.addRawArchiveEntry(entry, zipFile.getRawInputStream(entry));
+                    continue;
+                }
+                byte[] sheet;
+                try (InputStream inputStream = zipFile.getInputStream(entry))
+                {
+                    sheet = patchSheet(inputStream, cells);
+                }
+                ZipArchiveEntry patchedEntry = new ZipArchiveEntry(entry.getName());
+                patchedEntry.setMethod(ZipEntry.DEFLATED);
+                patchedEntry.setTime(entry.getTime());
+                zipOutputStream.putArchiveEntry(patchedEntry);
+                zipOutputStream.write(sheet);
+                zipOutputStream.closeArchiveEntry();
+                patched = true;
+            }
+            if (!patched)
+                throw new IOException("No part " + sheetPartName + " in the package");
+        }
+        return buffer.toByteArray();
+    }
+
+    static byte[] patchSheet(InputStream sheet, SortedMap<Integer, SortedMap<Integer, String>> cells) throws IOException
+    {
+        // Consumed as rows and cells go by, whatever is left when a row or the sheet data ends gets added there
+        TreeMap<Integer, SortedMap<Integer, String>> pendingRows = new TreeMap<>();
+        for (Map.Entry<Integer, SortedMap<Integer, String>> row : cells.entrySet())
+            pendingRows.put(row.getKey(), new TreeMap<>(row.getValue()));
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try
+        {
+            XMLEventReader reader = _INPUT_FACTORY.createXMLEventReader(sheet);
+            XMLEventWriter writer = _OUTPUT_FACTORY.createXMLEventWriter(buffer, "UTF-8");
+            String prefix = "";
+            TreeMap<Integer, String> pendingCells = null;
+            int rowIndex = -1;
+            boolean inSheetData = false;
+            while (reader.hasNext())
+            {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement())
+                {
+                    StartElement element = event.asStartElement();
+                    String name = localNameOf(element.getName());
+                    if ("sheetData".equals(name))
+                    {
+                        inSheetData = true;
+                        prefix = element.getName().getPrefix();
+                    }
+                    else if (inSheetData && "row".equals(name))
+                    {
+                        rowIndex = Integer.parseInt(attribute(element, "r")) - 1;
+                        // Rows that are missing in between
+                        while (!pendingRows.isEmpty() && pendingRows.firstKey() < rowIndex)
+                        {
+                            Map.Entry<Integer, SortedMap<Integer, String>> row = pendingRows.pollFirstEntry();
+                            writeRow(writer, prefix, row.getKey(), row.getValue());
+                        }
+                        SortedMap<Integer, String> changes = pendingRows.remove(rowIndex);
+                        pendingCells = changes == null ? null : new TreeMap<>(changes);
+                    }
+                    else if (pendingCells != null && "c".equals(name))
+                    {
+                        int columnIndex = columnIndexOf(attribute(element, "r"));
+                        while (!pendingCells.isEmpty() && pendingCells.firstKey() < columnIndex)
+                        {
+                            Map.Entry<Integer, String> cell = pendingCells.pollFirstEntry();
+                            writeCell(writer, prefix, rowIndex, cell.getKey(), null, cell.getValue());
+                        }
+                        if (pendingCells.containsKey(columnIndex))
+                        {
+                            // Keeps the style of the cell, drops its old value
+                            writeCell(writer, prefix, rowIndex, columnIndex, attribute(element, "s"), pendingCells.remove(columnIndex));
+                            skipElement(reader);
+                            continue;
+                        }
+                    }
+                }
+                else if (event.isEndElement())
+                {
+                    String name = localNameOf(event.asEndElement().getName());
+                    if (pendingCells != null && "row".equals(name))
+                    {
+                        for (Map.Entry<Integer, String> cell : pendingCells.entrySet())
+                            writeCell(writer, prefix, rowIndex, cell.getKey(), null, cell.getValue());
+                        pendingCells = null;
+                    }
+                    else if (inSheetData && "sheetData".equals(name))
+                    {
+                        for (Map.Entry<Integer, SortedMap<Integer, String>> row : pendingRows.entrySet())
+                            writeRow(writer, prefix, row.getKey(), row.getValue());
+                        pendingRows.clear();
+                        inSheetData = false;
+                    }
+                }
+                writer.add(event);
+            }
+            writer.flush();
+            writer.close();
+            reader.close();
+        }
+        catch (XMLStreamException | RuntimeException e)
+        {
+            throw new IOException("Unable to patch sheet", e);
+        }
+        if (!pendingRows.isEmpty())
+            throw new IOException("No sheet data to patch");
+        return buffer.toByteArray();
+    }
+
+    private static void writeRow(XMLEventWriter writer, String prefix, int rowIndex, SortedMap<Integer, String> cells) throws XMLStreamException
+    {
+        List<Attribute> attributes = List.of(_EVENT_FACTORY.createAttribute("r", Integer.toString(rowIndex + 1)));
+        writer.add(_EVENT_FACTORY.createStartElement(prefix, AttachmentOptimizer._SPREADSHEET_NAMESPACE, "row", attributes.iterator(), null));
+        for (Map.Entry<Integer, String> cell : cells.entrySet())
+            writeCell(writer, prefix, rowIndex, cell.getKey(), null, cell.getValue());
+        writer.add(_EVENT_FACTORY.createEndElement(prefix, AttachmentOptimizer._SPREADSHEET_NAMESPACE, "row"));
+    }
+
+    private static void writeCell(XMLEventWriter writer, String prefix, int rowIndex, int columnIndex, String style, String value) throws XMLStreamException
+    {
+        List<Attribute> attributes = new ArrayList<>();
+        attributes.add(_EVENT_FACTORY.createAttribute("r", referenceOf(rowIndex, columnIndex)));
+        if (style != null)
+            attributes.add(_EVENT_FACTORY.createAttribute("s", style));
+        attributes.add(_EVENT_FACTORY.createAttribute("t", "inlineStr"));
+        writer.add(_EVENT_FACTORY.createStartElement(prefix, AttachmentOptimizer._SPREADSHEET_NAMESPACE, "c", attributes.iterator(), null));
+        writer.add(_EVENT_FACTORY.createStartElement(prefix, AttachmentOptimizer._SPREADSHEET_NAMESPACE, "is"));
+        Iterator<Attribute> space = List.of(_EVENT_FACTORY.createAttribute(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI, "space", "preserve")).iterator();
+        writer.add(_EVENT_FACTORY.createStartElement(prefix, AttachmentOptimizer._SPREADSHEET_NAMESPACE, "t", space, null));
+        writer.add(_EVENT_FACTORY.createCharacters(value));
+        writer.add(_EVENT_FACTORY.createEndElement(prefix, AttachmentOptimizer._SPREADSHEET_NAMESPACE, "t"));
+        writer.add(_EVENT_FACTORY.createEndElement(prefix, AttachmentOptimizer._SPREADSHEET_NAMESPACE, "is"));
+        writer.add(_EVENT_FACTORY.createEndElement(prefix, AttachmentOptimizer._SPREADSHEET_NAMESPACE, "c"));
+    }
+
+    /**
+     * Reads past the end of the element whose start has just been read.
+     */
+    private static void skipElement(XMLEventReader reader) throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0)
+        {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement())
+                ++depth;
+            else if (event.isEndElement())
+                --depth;
+        }
+    }
+
+    private static String localNameOf(QName name)
+    {
+        return AttachmentOptimizer._SPREADSHEET_NAMESPACE.equals(name.getNamespaceURI()) ? name.getLocalPart() : "";
+    }
+
+    private static String attribute(StartElement element, String name)
+    {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute == null ? null : attribute.getValue();
+    }
+
+    /**
+     * Zero based column of an {@code A1} style reference.
+     */
+    static int columnIndexOf(String reference)
+    {
+        int column = 0;
+        for (int i = 0; i < reference.length() && Character.isLetter(reference.charAt(i)); i++)
+            column = column * 26 + (Character.toUpperCase(reference.charAt(i)) - 'A' + 1);
+        return column - 1;
+    }
+
+    static String referenceOf(int rowIndex, int columnIndex)
+    {
+        StringBuilder column = new StringBuilder();
+        for (int i = columnIndex + 1; i > 0; i = (i - 1) / 26)
+            column.insert(0, (char)('A' + (i - 1) % 26));
+        return column.append(rowIndex + 1).toString();
+    }
+}
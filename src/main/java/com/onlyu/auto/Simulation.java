@@ -0,0 +1,124 @@
+package com.onlyu.auto;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.URLName;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Replays one run per day over a range of dates against a scratch base directory, every run pretending to
+ * happen on its own day. Emails go through the regular outbox and send path but end up in memory instead
+ * of on a mail server, so a whole year of daily runs takes seconds and shows exactly what would have gone out when.
+ */
+public class Simulation
+{
+    private static final Logger _LOGGER = LogManager.getLogger(Simulation.class);
+
+    public static final String _SENDER = "simulation@localhost";
+    public static final String _RECIPIENTS = "team@localhost";
+    public static final String _PROJECT_NAME = "Simulation";
+
+    /**
+     * Transport that is always connected and only keeps the subjects of what it was asked to send.
+     */
+    static class RecordingTransport extends Transport
+    {
+        private final List<String> _sent = new ArrayList<>();
+
+        RecordingTransport(Session session)
+        {
+            super(session, new URLName("smtp://simulation"));
+        }
+
+        @Override
+        public void sendMessage(Message message, Address[] addresses) throws MessagingException
+        {
+            _sent.add(message.getSubject());
+        }
+
+        @Override
+        public boolean isConnected()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        List<String> drainSent()
+        {
+            List<String> sent = new ArrayList<>(_sent);
+            _sent.clear();
+            return sent;
+        }
+    }
+
+    private final Path _baseDir;
+    private final LocalDate _from;
+    private final LocalDate _to;
+    private final RunOptions _options;
+
+    Simulation(Path baseDir, LocalDate from, LocalDate to, RunOptions options)
+    {
+        _baseDir = baseDir;
+        _from = from;
+        _to = to;
+        _options = options;
+    }
+
+    public static Simulation of(Path baseDir, LocalDate from, LocalDate to, RunOptions options)
+    {
+        if (to.isBefore(from))
+            throw new IllegalArgumentException(String.format("Simulation ends before it starts: %s..%s", from, to));
+        return new Simulation(baseDir, from, to, options);
+    }
+
+    /**
+     * Runs every day of the range in order and returns the number of emails that went out.
+     */
+    public int run() throws IOException, InvalidFormatException, MessagingException, InterruptedException
+    {
+        Profile profile = Profile.of(_baseDir, _SENDER, "", _RECIPIENTS, "", _PROJECT_NAME);
+        RecordingTransport transport = new RecordingTransport(MailSender.newSession(_options.getMailEndpoint(), _options.getRetryPolicy().getDeadline(), _SENDER, ""));
+        StateLedger ledger = StateLedger.of(_baseDir);
+        Semaphore parsePermits = new Semaphore(1);
+        // Read once for the whole range, like the log would be by a single long run
+        ContentProvider contentProvider = ContentProvider.of(_options.getContentSource(), profile);
+        int days = 0;
+        int emails = 0;
+        long start = System.nanoTime();
+        try (TransportPool transportPool = TransportPool.of())
+        {
+            // The connection is taken from the pool on every run and handed back afterwards
+            transportPool.release(_SENDER, transport);
+            for (LocalDate day = _from; !day.isAfter(_to); day = day.plusDays(1))
+            {
+                AutoUpdater.run(profile, _options, parsePermits, transportPool, ledger, RunContext.of(RunContext.fixedAt(day), contentProvider, RunMetrics.of(profile)));
+                for (String subject : transport.drainSent())
+                {
+                    ++emails;
+                    _LOGGER.info("[{}] {} {}", _PROJECT_NAME, day, subject);
+                }
+                ++days;
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        _LOGGER.info("Simulated {} day(s) from {} to {} in {} ms ({} ms per run), {} email(s) sent", Unbox.box(days), _from, _to, Unbox.box(elapsedMillis), Unbox.box(elapsedMillis / days), Unbox.box(emails));
+        return emails;
+    }
+}
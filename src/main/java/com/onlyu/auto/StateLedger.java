@@ -0,0 +1,205 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sidecar copy of the {@link MonthSheet} of every report in a base directory, one line per report:
+ * {@code <report file name>|<size>|<last modified millis>|<weeks>}, where the weeks are separated by commas
+ * and each is {@code S}/{@code -} (sent) followed by its begin, end, total time, description, note and
+ * calculated total time, URL encoded and separated by semicolons. A line is only trusted while the report
+ * still has the recorded size and modification time, lines it cannot make sense of are simply scanned again.
+ */
+public class StateLedger
+{
+    private static final Logger _LOGGER = LogManager.getLogger(StateLedger.class);
+
+    public static final String _LEDGER_FILE_NAME = ".timesheet-state";
+    public static final String _FIELD_SEPARATOR = "|";
+    public static final String _WEEK_SEPARATOR = ",";
+    public static final String _WEEK_FIELD_SEPARATOR = ";";
+
+    private static final class Line
+    {
+        private final long _size;
+        private final long _lastModified;
+        private final String _weeks;
+
+        Line(long size, long lastModified, String weeks)
+        {
+            _size = size;
+            _lastModified = lastModified;
+            _weeks = weeks;
+        }
+    }
+
+    private final Path _ledgerFilePath;
+    private final Map<String, Line> _lines = new TreeMap<>();
+    private boolean _dirty;
+
+    StateLedger(Path baseDir)
+    {
+        _ledgerFilePath = baseDir.resolve(_LEDGER_FILE_NAME);
+    }
+
+    public static StateLedger of(Path baseDir)
+    {
+        StateLedger ledger = new StateLedger(baseDir);
+        try
+        {
+            ledger.load();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // A broken ledger is only a cache, start over from the workbooks
+            _LOGGER.warn("Ignoring unreadable state ledger {}: {}", ledger._ledgerFilePath, e.getMessage());
+            ledger._lines.clear();
+        }
+        return ledger;
+    }
+
+    private void load() throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(_ledgerFilePath))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.isBlank())
+                    continue;
+                String[] fields = line.split("\\" + _FIELD_SEPARATOR, -1);
+                if (fields.length != 4)
+                    throw new IOException("Malformed ledger line: " + line);
+                _lines.put(fields[0], new Line(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+            }
+        }
+        catch (NoSuchFileException e)
+        {
+            // First run in this base directory
+        }
+    }
+
+    /**
+     * Snapshot of the report as recorded in the ledger, or {@code null} when there is none or the report changed since.
+     */
+    public synchronized ReportSnapshot lookup(File report) throws IOException
+    {
+        Line line = _lines.get(report.getName());
+        if (line == null || !report.exists())
+            return null;
+        BasicFileAttributes attributes = Files.readAttributes(report.toPath(), BasicFileAttributes.class);
+        if (attributes.size() != line._size || attributes.lastModifiedTime().toMillis() != line._lastModified)
+            return null;
+        Month month = ReportHandler.parseMonth(report.getName());
+        Year year = ReportHandler.parseYear(report.getName());
+        MonthSheet monthSheet = decode(MonthLayout.of(YearMonth.of(year.getValue(), month)), line._weeks);
+        return monthSheet == null ? null : ReportSnapshot.of(report, monthSheet);
+    }
+
+    static String encode(MonthSheet monthSheet)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (MonthSheet.Week week : monthSheet.getWeeks())
+        {
+            if (!sb.isEmpty())
+                sb.append(_WEEK_SEPARATOR);
+            sb.append(week.hasBeenSent() ? 'S' : '-');
+            for (String field : new String[] { week.getBeginAt(), week.getEndAt(), week.getTotalTime(), week.getTaskDescription(), week.getNote(), week.getTotalTimeCalculated() })
+                sb.append(_WEEK_FIELD_SEPARATOR).append(URLEncoder.encode(field, StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Month sheet of the encoded weeks, {@code null} when they do not fit the layout of the month.
+     */
+    static MonthSheet decode(MonthLayout layout, String encoded)
+    {
+        String[] encodedWeeks = encoded.split(_WEEK_SEPARATOR, -1);
+        if (encodedWeeks.length != layout.getWeeks().size())
+            return null;
+        List<MonthSheet.Week> weeks = new ArrayList<>();
+        for (MonthLayout.Week bounds : layout.getWeeks())
+        {
+            String[] fields = encodedWeeks[bounds.getIndex()].split(_WEEK_FIELD_SEPARATOR, -1);
+            if (fields.length != 7 || fields[0].length() != 1)
+                return null;
+            for (int i = 1; i < fields.length; i++)
+                fields[i] = URLDecoder.decode(fields[i], StandardCharsets.UTF_8);
+            weeks.add(MonthSheet.week(bounds, fields[1], fields[2], fields[3], fields[4], fields[5], fields[6], fields[0].charAt(0) == 'S'));
+        }
+        return MonthSheet.of(layout, weeks);
+    }
+
+    /**
+     * Whether the ledger knows the report exactly as it is on disk right now.
+     */
+    public synchronized boolean isUpToDate(File report) throws IOException
+    {
+        Line line = _lines.get(report.getName());
+        if (line == null || !report.exists())
+            return false;
+        BasicFileAttributes attributes = Files.readAttributes(report.toPath(), BasicFileAttributes.class);
+        return attributes.size() == line._size && attributes.lastModifiedTime().toMillis() == line._lastModified;
+    }
+
+    /**
+     * Forgets the report, it is scanned again the next time it is needed.
+     */
+    public synchronized void invalidate(File report)
+    {
+        if (_lines.remove(report.getName()) != null)
+            _dirty = true;
+    }
+
+    /**
+     * Records the snapshot against the current size and modification time of its report file.
+     */
+    public synchronized void record(ReportSnapshot snapshot) throws IOException
+    {
+        BasicFileAttributes attributes = Files.readAttributes(snapshot.getFile().toPath(), BasicFileAttributes.class);
+        Line line = new Line(attributes.size(), attributes.lastModifiedTime().toMillis(), encode(snapshot.getMonthSheet()));
+        Line previous = _lines.put(snapshot.getFile().getName(), line);
+        if (previous == null || previous._size != line._size || previous._lastModified != line._lastModified || !previous._weeks.equals(line._weeks))
+            _dirty = true;
+    }
+
+    public synchronized void save() throws IOException
+    {
+        if (!_dirty)
+            return;
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Line> entry : _lines.entrySet())
+        {
+            sb.append(String.join
+            (
+                _FIELD_SEPARATOR,
+                entry.getKey(),
+                Long.toString(entry.getValue()._size),
+                Long.toString(entry.getValue()._lastModified),
+                entry.getValue()._weeks
+            ));
+            sb.append(System.lineSeparator());
+        }
+        DurableFiles.write(_ledgerFilePath, sb.toString().getBytes(StandardCharsets.UTF_8));
+        _dirty = false;
+    }
+}
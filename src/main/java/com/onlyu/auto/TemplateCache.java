@@ -0,0 +1,123 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of the bytes of the report template, nothing more: it saves reading the template from
+ * the classpath or the base directory for every new report, a template living on the file system is read
+ * again whenever its size or modification time changes. Every new report still parses the template into an
+ * {@code OPCPackage} and {@code XSSFWorkbook} of its own, POI has no supported way to copy a parsed workbook,
+ * so that cost remains.
+ */
+public class TemplateCache
+{
+    private static final Logger _LOGGER = LogManager.getLogger(TemplateCache.class);
+
+    private static final class Entry
+    {
+        private final long _size;
+        private final long _lastModified;
+        private final byte[] _bytes;
+
+        Entry(long size, long lastModified, byte[] bytes)
+        {
+            _size = size;
+            _lastModified = lastModified;
+            _bytes = bytes;
+        }
+    }
+
+    private static final Map<String, Entry> _ENTRIES = new ConcurrentHashMap<>();
+
+    private TemplateCache()
+    {
+    }
+
+    /**
+     * Template from the classpath, or from the base directory as a fallback, same lookup order as before.
+     */
+    public static InputStream open(Path baseDir) throws IOException
+    {
+        ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+        URL resource = classloader.getResource(ReportHandler._TEMPLATE_FILE_NAME);
+        if (resource == null)
+            return new ByteArrayInputStream(load(Path.of(baseDir.toString(), ReportHandler._TEMPLATE_FILE_NAME)));
+        if ("file".equals(resource.getProtocol()))
+        {
+            try
+            {
+                return new ByteArrayInputStream(load(Path.of(resource.toURI())));
+            }
+            catch (URISyntaxException e)
+            {
+                throw new IOException("Invalid template location " + resource, e);
+            }
+        }
+        // Bundled inside the JAR, it cannot change for the lifetime of the process
+        try
+        {
+            return new ByteArrayInputStream(_ENTRIES.computeIfAbsent(resource.toString(), key ->
+            {
+                try (InputStream inputStream = resource.openStream())
+                {
+                    byte[] bytes = inputStream.readAllBytes();
+                    return new Entry(bytes.length, 0, bytes);
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            })._bytes);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    static byte[] load(Path template) throws IOException
+    {
+        BasicFileAttributes attributes = Files.readAttributes(template, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        try
+        {
+            return _ENTRIES.compute(template.toAbsolutePath().toString(), (key, cached) ->
+            {
+                if (cached != null && cached._size == size && cached._lastModified == lastModified)
+                    return cached;
+                try
+                {
+                    _LOGGER.info("Loading report template {}", template);
+                    return new Entry(size, lastModified, Files.readAllBytes(template));
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            })._bytes;
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    public static void invalidate()
+    {
+        _ENTRIES.clear();
+    }
+}
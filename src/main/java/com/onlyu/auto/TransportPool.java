@@ -0,0 +1,99 @@
+package com.onlyu.auto;
+
+import jakarta.mail.Transport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps authenticated SMTP connections around, per account, so that consecutive messages of the same
+ * account (batch runs, retried sends) do not pay the TLS handshake and authentication again. Nothing of the
+ * pool is set up before the first connection is handed back, and none of it loads the mail classes, so runs
+ * with nothing to send can hold one for free.
+ */
+public class TransportPool implements AutoCloseable
+{
+    public static final int _DEFAULT_MAX_IDLE_PER_ACCOUNT = 2;
+
+    private final int _maxIdlePerAccount;
+    private Map<String, Deque<Transport>> _idle;
+
+    TransportPool(int maxIdlePerAccount)
+    {
+        _maxIdlePerAccount = maxIdlePerAccount;
+    }
+
+    public static TransportPool of()
+    {
+        return new TransportPool(_DEFAULT_MAX_IDLE_PER_ACCOUNT);
+    }
+
+    public static TransportPool of(int maxIdlePerAccount)
+    {
+        return new TransportPool(maxIdlePerAccount);
+    }
+
+    /**
+     * An idle transport of the account that is still connected, or {@code null} when there is none. The
+     * liveness check is a round trip to the mail server, so it happens outside the lock.
+     */
+    public Transport acquire(String account)
+    {
+        Transport transport;
+        while ((transport = poll(account)) != null)
+        {
+            if (transport.isConnected())
+                return transport;
+            MailSender.closeQuietly(transport);
+        }
+        return null;
+    }
+
+    /**
+     * Hands a connected transport back for later reuse, anything beyond the idle limit gets closed.
+     */
+    public void release(String account, Transport transport)
+    {
+        if (!transport.isConnected())
+            return;
+        if (!offer(account, transport))
+            MailSender.closeQuietly(transport);
+    }
+
+    @Override
+    public void close()
+    {
+        List<Transport> transports = new ArrayList<>();
+        synchronized (this)
+        {
+            if (_idle == null)
+                return;
+            for (Deque<Transport> idle : _idle.values())
+                transports.addAll(idle);
+            _idle.clear();
+        }
+        for (Transport transport : transports)
+            MailSender.closeQuietly(transport);
+    }
+
+    private synchronized Transport poll(String account)
+    {
+        Deque<Transport> idle = _idle == null ? null : _idle.get(account);
+        return idle == null ? null : idle.pollFirst();
+    }
+
+    private synchronized boolean offer(String account, Transport transport)
+    {
+        if (_idle == null)
+            _idle = new HashMap<>();
+        Deque<Transport> idle = _idle.computeIfAbsent(account, key -> new ArrayDeque<>());
+        if (idle.size() >= _maxIdlePerAccount)
+            return false;
+        idle.addFirst(transport);
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+package com.onlyu.auto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * What goes into the cells of one week entry, as handed out by a {@link ContentProvider}.
+ */
+public class WeekContent
+{
+    private final String _beginAt;
+    private final String _endAt;
+    private final String _totalTime;
+    private final String _taskDescription;
+    private final String _note;
+    private final String _totalTimeCalculated;
+
+    WeekContent(String beginAt, String endAt, String totalTime, String taskDescription, String note, String totalTimeCalculated)
+    {
+        _beginAt = beginAt;
+        _endAt = endAt;
+        _totalTime = totalTime;
+        _taskDescription = taskDescription;
+        _note = note;
+        _totalTimeCalculated = totalTimeCalculated;
+    }
+
+    public static WeekContent of(String beginAt, String endAt, String totalTime, String taskDescription, String note, String totalTimeCalculated)
+    {
+        return new WeekContent(beginAt, endAt, totalTime, taskDescription, note, totalTimeCalculated);
+    }
+
+    /**
+     * Hours as they are written into the sheet, {@code 25h} or {@code 23.5h}, rounded to two decimals.
+     */
+    public static String formatHours(double hours)
+    {
+        BigDecimal rounded = BigDecimal.valueOf(hours).setScale(2, RoundingMode.HALF_UP).stripTrailingZeros();
+        return (rounded.signum() == 0 ? "0" : rounded.toPlainString()) + "h";
+    }
+
+    public String getBeginAt()
+    {
+        return _beginAt;
+    }
+
+    public String getEndAt()
+    {
+        return _endAt;
+    }
+
+    public String getTotalTime()
+    {
+        return _totalTime;
+    }
+
+    public String getTaskDescription()
+    {
+        return _taskDescription;
+    }
+
+    public String getNote()
+    {
+        return _note;
+    }
+
+    public String getTotalTimeCalculated()
+    {
+        return _totalTimeCalculated;
+    }
+}
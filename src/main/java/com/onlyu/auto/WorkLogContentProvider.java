@@ -0,0 +1,212 @@
+package com.onlyu.auto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Content taken from a log of the work actually done. The log is streamed once, on the first week asked for,
+ * and every entry is folded into the tally of the sheet week it falls into right away, so memory grows with
+ * the number of weeks the log covers, never with its size. Weekends count towards the week before them. A
+ * provider kept between runs reads the log again only once its {@link #getSourceVersion() version} changed.
+ */
+public abstract class WorkLogContentProvider implements ContentProvider
+{
+    private static final Logger _LOGGER = LogManager.getLogger(WorkLogContentProvider.class);
+
+    public static final DateTimeFormatter _TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    public static final int _MAX_TRACKED_DESCRIPTIONS = 32;
+    public static final int _MAX_LISTED_DESCRIPTIONS = 5;
+    public static final int _MAX_DESCRIPTION_LENGTH = 200;
+    public static final int _MAX_REPORTED_SKIPS = 5;
+
+    /**
+     * Running totals of one sheet week. Only the first descriptions and notes seen are kept apart, the hours
+     * of any further ones still count towards the total.
+     */
+    static final class Tally
+    {
+        private double _hours;
+        private long _days;
+        private LocalTime _beginAt;
+        private LocalTime _endAt;
+        private final Map<String, Double> _descriptions = new LinkedHashMap<>();
+        private int _untrackedDescriptions;
+        private final Map<String, Double> _notes = new LinkedHashMap<>();
+
+        void add(LocalDate date, LocalTime beginAt, LocalTime endAt, double hours, String description, String note)
+        {
+            _hours += hours;
+            _days |= 1L << date.getDayOfMonth();
+            if (beginAt != null && (_beginAt == null || beginAt.isBefore(_beginAt)))
+                _beginAt = beginAt;
+            if (endAt != null && (_endAt == null || endAt.isAfter(_endAt)))
+                _endAt = endAt;
+            if (!description.isEmpty() && !track(_descriptions, description, hours))
+                ++_untrackedDescriptions;
+            if (!note.isEmpty())
+                track(_notes, note, hours);
+        }
+
+        private static boolean track(Map<String, Double> tracked, String key, double hours)
+        {
+            if (!tracked.containsKey(key) && tracked.size() >= _MAX_TRACKED_DESCRIPTIONS)
+                return false;
+            tracked.merge(key, hours, Double::sum);
+            return true;
+        }
+
+        WeekContent toContent()
+        {
+            int days = Long.bitCount(_days);
+            String totalTime = String.format("%s/day = %s/week", WeekContent.formatHours(_hours / days), WeekContent.formatHours(_hours));
+            List<String> descriptions = largestFirst(_descriptions);
+            StringJoiner description = new StringJoiner("; ");
+            descriptions.stream().limit(_MAX_LISTED_DESCRIPTIONS).forEach(description::add);
+            int more = Math.max(0, descriptions.size() - _MAX_LISTED_DESCRIPTIONS) + _untrackedDescriptions;
+            String taskDescription = more > 0 ? String.format("%s (and %d more)", description, more) : description.toString();
+            StringJoiner note = new StringJoiner(", ");
+            largestFirst(_notes).stream().limit(_MAX_LISTED_DESCRIPTIONS).forEach(note::add);
+            return WeekContent.of
+            (
+                _beginAt == null ? "" : _beginAt.format(_TIME_FORMATTER),
+                _endAt == null ? "" : _endAt.format(_TIME_FORMATTER),
+                totalTime,
+                taskDescription,
+                note.toString(),
+                WeekContent.formatHours(_hours)
+            );
+        }
+
+        private static List<String> largestFirst(Map<String, Double> tracked)
+        {
+            List<Map.Entry<String, Double>> entries = new ArrayList<>(tracked.entrySet());
+            entries.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+            List<String> keys = new ArrayList<>(entries.size());
+            for (Map.Entry<String, Double> entry : entries)
+                keys.add(entry.getKey());
+            return keys;
+        }
+    }
+
+    private volatile Map<YearMonth, Tally[]> _tallies = Map.of();
+    private Map<YearMonth, Tally[]> _reading;
+    private String _version;
+    private boolean _upToDate;
+    private long _skipped;
+
+    /**
+     * Streams the whole log through {@link #record}, called once per provider.
+     */
+    protected abstract void read() throws IOException;
+
+    /**
+     * Name of the log in messages.
+     */
+    protected abstract String getSourceName();
+
+    /**
+     * Anything that changes whenever the log does, {@code null} when that cannot be told and the log has to be read again.
+     */
+    protected abstract String getSourceVersion() throws IOException;
+
+    @Override
+    public synchronized void refresh()
+    {
+        _upToDate = false;
+    }
+
+    @Override
+    public WeekContent contentOf(MonthLayout.Week week) throws IOException
+    {
+        load();
+        Tally[] tallies = _tallies.get(YearMonth.from(week.getStartOfWeek()));
+        Tally tally = tallies == null ? null : tallies[week.getIndex()];
+        // Nothing logged for it yet, the log may well catch up before a later run
+        return tally == null ? null : tally.toContent();
+    }
+
+    private synchronized void load() throws IOException
+    {
+        if (_upToDate)
+            return;
+        String version = getSourceVersion();
+        if (version != null && version.equals(_version))
+        {
+            _upToDate = true;
+            return;
+        }
+        long start = System.nanoTime();
+        // Read aside, runs still working with the previous tallies keep seeing all of them
+        _reading = new HashMap<>();
+        _skipped = 0;
+        try
+        {
+            read();
+            _tallies = _reading;
+        }
+        finally
+        {
+            _reading = null;
+        }
+        _version = version;
+        _upToDate = true;
+        if (_skipped > 0)
+            _LOGGER.warn("Skipped {} unreadable entries of {}", Unbox.box(_skipped), getSourceName());
+        _LOGGER.info("Read work log {} covering {} month(s) in {}ms", getSourceName(), Unbox.box(_tallies.size()), Unbox.box((System.nanoTime() - start) / 1_000_000));
+    }
+
+    /**
+     * Adds one entry of the log to the week of its date. Times may be {@code null} when the log does not have them.
+     */
+    protected void record(LocalDate date, LocalTime beginAt, LocalTime endAt, double hours, String description, String note)
+    {
+        MonthLayout layout = MonthLayout.of(YearMonth.from(date));
+        Tally[] tallies = _reading.computeIfAbsent(layout.getMonth(), month -> new Tally[layout.getWeeks().size()]);
+        int index = weekIndexOf(layout, date);
+        if (tallies[index] == null)
+            tallies[index] = new Tally();
+        tallies[index].add(date, beginAt, endAt, hours, clean(description), clean(note));
+    }
+
+    /**
+     * Notes an entry that could not be read, only the first few are printed.
+     */
+    protected void skip(long lineNumber, String reason)
+    {
+        if (++_skipped <= _MAX_REPORTED_SKIPS)
+            _LOGGER.warn("Skipping line {} of {}: {}", Unbox.box(lineNumber), getSourceName(), reason);
+    }
+
+    static int weekIndexOf(MonthLayout layout, LocalDate date)
+    {
+        int index = 0;
+        for (MonthLayout.Week week : layout.getWeeks())
+        {
+            if (week.getStartOfWeek().isAfter(date))
+                break;
+            index = week.getIndex();
+        }
+        return index;
+    }
+
+    static String clean(String text)
+    {
+        if (text == null)
+            return "";
+        String cleaned = text.strip().replaceAll("\\s+", " ");
+        return cleaned.length() > _MAX_DESCRIPTION_LENGTH ? cleaned.substring(0, _MAX_DESCRIPTION_LENGTH - 3) + "..." : cleaned;
+    }
+}
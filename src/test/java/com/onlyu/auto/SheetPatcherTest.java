@@ -0,0 +1,221 @@
+package com.onlyu.auto;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips of {@link SheetPatcher} on a report created from the template: the result is read back through
+ * POI and {@link ReportScanner} the way a later run would.
+ */
+class SheetPatcherTest
+{
+    private static final String _PATCHED_VALUE = "Patched description";
+    private static final String _ADDED_VALUE = "Added by the patcher";
+    private static final int _GAP_ROWS = 3;
+
+    @TempDir
+    Path _baseDir;
+
+    private MonthLayout _layout;
+    private File _report;
+    private byte[] _source;
+    private String _sheetPartName;
+
+    @BeforeEach
+    void createReport() throws Exception
+    {
+        YearMonth month = YearMonth.now().minusMonths(2);
+        _layout = MonthLayout.of(month);
+        _report = AutoUpdater.reportFileOf(_baseDir, month);
+        try (ReportHandler handler = new ReportHandler(_report, _baseDir))
+        {
+            handler
+                .updatePeriodTitle()
+                .updateStartOfMonth()
+                .updateEndOfMonth()
+                .updateWeekPeriods()
+                .updateContent(LocalDate.now())
+                .save();
+        }
+        // A row some way below the last one, so that there is a gap for rows to go into
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(Files.readAllBytes(_report.toPath()))))
+        {
+            XSSFSheet sheet = workbook.getSheetAt(0);
+            sheet.createRow(sheet.getLastRowNum() + _GAP_ROWS + 1).createCell(MonthLayout._PERIOD_COLUMN).setCellValue("Below the gap");
+            _sheetPartName = sheet.getPackagePart().getPartName().getName().substring(1);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            workbook.write(buffer);
+            _source = buffer.toByteArray();
+        }
+    }
+
+    @Test
+    void replacesCellsKeepingTheirStyle() throws IOException
+    {
+        SortedMap<Integer, SortedMap<Integer, String>> cells = new TreeMap<>();
+        int row = _layout.getWeeks().get(0).getContentRow();
+        put(cells, row, MonthLayout._TASK_DESCRIPTION_COLUMN, _PATCHED_VALUE);
+        try (XSSFWorkbook source = open(_source); XSSFWorkbook patched = open(SheetPatcher.patch(_source, _sheetPartName, cells)))
+        {
+            Cell before = source.getSheetAt(0).getRow(row).getCell(MonthLayout._TASK_DESCRIPTION_COLUMN);
+            assertNotNull(before, "the first week has no description to replace");
+            Cell after = patched.getSheetAt(0).getRow(row).getCell(MonthLayout._TASK_DESCRIPTION_COLUMN);
+            assertEquals(_PATCHED_VALUE, after.getStringCellValue());
+            assertEquals(before.getCellStyle().getIndex(), after.getCellStyle().getIndex());
+        }
+    }
+
+    @Test
+    void addsCellsMissingFromTheirRow() throws IOException
+    {
+        SortedMap<Integer, SortedMap<Integer, String>> cells = new TreeMap<>();
+        int row = _layout.getWeeks().get(0).getContentRow();
+        int column;
+        try (XSSFWorkbook source = open(_source))
+        {
+            column = source.getSheetAt(0).getRow(row).getLastCellNum() + 1;
+        }
+        put(cells, row, column, _ADDED_VALUE);
+        try (XSSFWorkbook patched = open(SheetPatcher.patch(_source, _sheetPartName, cells)))
+        {
+            assertEquals(_ADDED_VALUE, patched.getSheetAt(0).getRow(row).getCell(column).getStringCellValue());
+        }
+    }
+
+    @Test
+    void addsRowsInGapsAndAfterTheLastRow() throws IOException
+    {
+        SortedMap<Integer, SortedMap<Integer, String>> cells = new TreeMap<>();
+        int lastRow;
+        try (XSSFWorkbook source = open(_source))
+        {
+            lastRow = source.getSheetAt(0).getLastRowNum();
+            assertNull(source.getSheetAt(0).getRow(lastRow - 1), "the fixture has no gap");
+        }
+        put(cells, lastRow - 1, MonthLayout._PERIOD_COLUMN, _ADDED_VALUE);
+        put(cells, lastRow + 2, MonthLayout._PERIOD_COLUMN, _ADDED_VALUE);
+        try (XSSFWorkbook patched = open(SheetPatcher.patch(_source, _sheetPartName, cells)))
+        {
+            Sheet sheet = patched.getSheetAt(0);
+            assertEquals(_ADDED_VALUE, sheet.getRow(lastRow - 1).getCell(MonthLayout._PERIOD_COLUMN).getStringCellValue());
+            assertEquals("Below the gap", sheet.getRow(lastRow).getCell(MonthLayout._PERIOD_COLUMN).getStringCellValue());
+            assertEquals(_ADDED_VALUE, sheet.getRow(lastRow + 2).getCell(MonthLayout._PERIOD_COLUMN).getStringCellValue());
+        }
+    }
+
+    @Test
+    void leavesEverythingElseAlone() throws IOException
+    {
+        SortedMap<Integer, SortedMap<Integer, String>> cells = sentMarks();
+        byte[] patched = SheetPatcher.patch(_source, _sheetPartName, cells);
+        try (XSSFWorkbook sourceWorkbook = open(_source); XSSFWorkbook patchedWorkbook = open(patched))
+        {
+            Sheet patchedSheet = patchedWorkbook.getSheetAt(0);
+            for (Row row : sourceWorkbook.getSheetAt(0))
+            {
+                for (Cell cell : row)
+                {
+                    if (cells.getOrDefault(cell.getRowIndex(), Collections.emptySortedMap()).containsKey(cell.getColumnIndex()))
+                        continue;
+                    String reference = SheetPatcher.referenceOf(cell.getRowIndex(), cell.getColumnIndex());
+                    Cell patchedCell = patchedSheet.getRow(cell.getRowIndex()).getCell(cell.getColumnIndex());
+                    assertNotNull(patchedCell, reference);
+                    assertEquals(cell.toString(), patchedCell.toString(), reference);
+                    assertEquals(cell.getCellStyle().getIndex(), patchedCell.getCellStyle().getIndex(), reference);
+                }
+            }
+        }
+        // Everything but the sheet part is copied over as is, still compressed, in the same order
+        try (ZipFile sourceZip = ZipFile.builder().setSeekableByteChannel(new SeekableInMemoryByteChannel(_source)).get();
+             ZipFile patchedZip = ZipFile.builder().setSeekableByteChannel(new SeekableInMemoryByteChannel(patched)).get())
+        {
+            List<ZipArchiveEntry> sourceEntries = Collections.list(sourceZip.getEntriesInPhysicalOrder());
+            List<ZipArchiveEntry> patchedEntries = Collections.list(patchedZip.getEntriesInPhysicalOrder());
+            assertEquals(namesOf(sourceEntries), namesOf(patchedEntries));
+            for (int i = 0; i < sourceEntries.size(); i++)
+            {
+                if (!sourceEntries.get(i).getName().equals(_sheetPartName))
+                    assertArrayEquals(rawBytesOf(sourceZip, sourceEntries.get(i)), rawBytesOf(patchedZip, patchedEntries.get(i)), sourceEntries.get(i).getName());
+            }
+        }
+    }
+
+    @Test
+    void patchedReportScansAsSent() throws IOException
+    {
+        Files.write(_report.toPath(), _source);
+        List<MonthSheet.Week> before = ReportScanner.scan(_report).getWeeks();
+        Files.write(_report.toPath(), SheetPatcher.patch(_source, _sheetPartName, sentMarks()));
+        List<MonthSheet.Week> after = ReportScanner.scan(_report).getWeeks();
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++)
+        {
+            assertFalse(before.get(i).hasBeenSent(), "week " + i);
+            assertTrue(after.get(i).hasBeenSent(), "week " + i);
+            assertEquals(before.get(i).getTaskDescription(), after.get(i).getTaskDescription(), "week " + i);
+        }
+    }
+
+    /**
+     * Every week marked as sent, the way a run does it.
+     */
+    private SortedMap<Integer, SortedMap<Integer, String>> sentMarks()
+    {
+        SortedMap<Integer, SortedMap<Integer, String>> cells = new TreeMap<>();
+        for (MonthLayout.Week week : _layout.getWeeks())
+            put(cells, week.getConcludeRow(), MonthLayout._SENT_COLUMN, MonthSheet._SENT);
+        return cells;
+    }
+
+    private static void put(SortedMap<Integer, SortedMap<Integer, String>> cells, int rowIndex, int columnIndex, String value)
+    {
+        cells.computeIfAbsent(rowIndex, row -> new TreeMap<>()).put(columnIndex, value);
+    }
+
+    private static XSSFWorkbook open(byte[] bytes) throws IOException
+    {
+        return new XSSFWorkbook(new ByteArrayInputStream(bytes));
+    }
+
+    private static List<String> namesOf(List<ZipArchiveEntry> entries)
+    {
+        List<String> names = new ArrayList<>();
+        for (ZipArchiveEntry entry : entries)
+            names.add(entry.getName());
+        return names;
+    }
+
+    private static byte[] rawBytesOf(ZipFile zipFile, ZipArchiveEntry entry) throws IOException
+    {
+        try (InputStream inputStream = zipFile.getRawInputStream(entry))
+        {
+            return inputStream.readAllBytes();
+        }
+    }
+}